@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.database.MatrixCursor;
+import android.test.AndroidTestCase;
+import android.text.format.DateUtils;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+public class TestForecastRows extends AndroidTestCase {
+
+    private static final long FIRST_DATE = 1419033600000L;  // December 20th, 2014
+
+    /*
+        Every day that was loaded must be found at its position, and no other day at all.
+     */
+    public void testGetPosition() {
+        // Named after ForecastLoader's columns, in the same order
+        MatrixCursor cursor = new MatrixCursor(new String[]{"_id", "date", "short_desc",
+                "max", "min", "location_setting", "weather_id", "coord_lat", "coord_long"});
+        long[] dates = new long[5];
+        for (int i = 0; i < dates.length; i++) {
+            dates[i] = WeatherContract.normalizeDate(
+                    FIRST_DATE + i * DateUtils.DAY_IN_MILLIS);
+            cursor.addRow(new Object[]{i + 1, dates[i], "Clear", 20.0 + i, 10.0 - i,
+                    "99705", 800, "64.7488", "-147.353"});
+        }
+
+        ForecastRows forecastRows = ForecastRows.fromCursor(mContext, cursor);
+        cursor.close();
+
+        assertEquals("Error: Wrong number of rows", dates.length, forecastRows.rows.size());
+        for (int i = 0; i < dates.length; i++) {
+            assertEquals("Error: Wrong position for day " + i, i, forecastRows.getPosition(dates[i]));
+            assertEquals("Error: Wrong row at position " + i,
+                    dates[i], forecastRows.rows.get(i).date);
+        }
+        assertEquals("Error: Found a day before the first",
+                -1, forecastRows.getPosition(dates[0] - DateUtils.DAY_IN_MILLIS));
+        assertEquals("Error: Found a day after the last",
+                -1, forecastRows.getPosition(dates[dates.length - 1] + DateUtils.DAY_IN_MILLIS));
+        assertEquals("Error: Found a day in the empty list",
+                -1, ForecastRows.EMPTY.getPosition(dates[0]));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+import android.text.format.DateUtils;
+
+import java.text.SimpleDateFormat;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TestFormattingCache extends AndroidTestCase {
+
+    private String mUnitsKey;
+    private String mOriginalUnits;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mUnitsKey = mContext.getString(R.string.pref_units_key);
+        mOriginalUnits = PreferenceManager.getDefaultSharedPreferences(mContext)
+                .getString(mUnitsKey, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SharedPreferences.Editor editor =
+                PreferenceManager.getDefaultSharedPreferences(mContext).edit();
+        if (mOriginalUnits == null) {
+            editor.remove(mUnitsKey);
+        } else {
+            editor.putString(mUnitsKey, mOriginalUnits);
+        }
+        editor.commit();
+        super.tearDown();
+    }
+
+    /*
+        Temperatures must read as they did when each was formatted on its own, in whichever
+        units are chosen, and follow the units preference when it changes.
+     */
+    public void testFormatTemperature() throws InterruptedException {
+        FormattingCache cache = FormattingCache.getInstance(mContext);
+        String format = mContext.getString(R.string.format_temperature);
+        double[] temperatures = {-40, -12.5, -0.6, 0, 0.5, 7.49, 21.5, 21.6, 35};
+
+        setUnits(R.string.pref_units_metric);
+        for (double temperature : temperatures) {
+            assertEquals("Error: Wrong metric temperature for " + temperature,
+                    String.format(format, temperature), cache.formatTemperature(temperature));
+        }
+        assertSame("Error: The same temperature wasn't cached",
+                cache.formatTemperature(21.5), cache.formatTemperature(21.7));
+        // Rounded to zero from below, it reads as zero rather than "-0"
+        assertEquals("Error: A temperature just below zero kept its sign",
+                String.format(format, 0.0), cache.formatTemperature(-0.4));
+
+        setUnits(R.string.pref_units_imperial);
+        for (double temperature : temperatures) {
+            assertEquals("Error: Wrong imperial temperature for " + temperature,
+                    String.format(format, temperature * 1.8 + 32),
+                    cache.formatTemperature(temperature));
+        }
+    }
+
+    /*
+        Days must be named as they are by the rules in Utility.getFriendlyDayString.
+     */
+    public void testFriendlyDayString() {
+        FormattingCache cache = FormattingCache.getInstance(mContext);
+        long now = System.currentTimeMillis();
+        String today = mContext.getString(R.string.today);
+
+        assertEquals("Error: Wrong long form of today",
+                mContext.getString(R.string.format_full_friendly_date, today,
+                        new SimpleDateFormat("MMMM dd").format(now)),
+                cache.getFriendlyDayString(now, true));
+        assertEquals("Error: Wrong short form of today",
+                today, cache.getFriendlyDayString(now, false));
+        assertEquals("Error: Wrong name for tomorrow", mContext.getString(R.string.tomorrow),
+                cache.getFriendlyDayString(now + DateUtils.DAY_IN_MILLIS, true));
+
+        long inThreeDays = now + 3 * DateUtils.DAY_IN_MILLIS;
+        assertEquals("Error: Wrong name for a day this week",
+                new SimpleDateFormat("EEEE").format(inThreeDays),
+                cache.getFriendlyDayString(inThreeDays, false));
+        long inTenDays = now + 10 * DateUtils.DAY_IN_MILLIS;
+        assertEquals("Error: Wrong name for a day after this week",
+                new SimpleDateFormat("EEE MMM dd").format(inTenDays),
+                cache.getFriendlyDayString(inTenDays, false));
+    }
+
+    private void setUnits(final int unitsResource) throws InterruptedException {
+        // Committed off the main thread, the listeners would only be told later, on the main
+        // thread.  Committed on it, they have been told by the time commit() returns.
+        final CountDownLatch committed = new CountDownLatch(1);
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                PreferenceManager.getDefaultSharedPreferences(mContext).edit()
+                        .putString(mUnitsKey, mContext.getString(unitsResource))
+                        .commit();
+                committed.countDown();
+            }
+        });
+        assertTrue("Error: The units weren't changed in time",
+                committed.await(5, TimeUnit.SECONDS));
+    }
+}
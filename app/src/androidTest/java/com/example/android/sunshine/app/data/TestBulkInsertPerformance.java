@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/*
+    Compares the compiled WeatherInsertStatement that bulkInsert uses against the
+    SQLiteDatabase.insert loop it replaced, over a sweep of row counts.  The timings end up in
+    logcat; the assertions only check that both paths write the same rows.
+ */
+public class TestBulkInsertPerformance extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestBulkInsertPerformance.class.getSimpleName();
+
+    // From a single location's forecast up to several locations' worth of hourly data
+    private static final int[] ROW_COUNTS = {14, 100, 1000, 10000};
+
+    private WeatherDbHelper mDbHelper;
+    private long mLocationRowId;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        mLocationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        mDbHelper = new WeatherDbHelper(mContext);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDbHelper.close();
+        super.tearDown();
+    }
+
+    public void testInsertStatementAgainstContentValuesInsert() {
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        for (int rowCount : ROW_COUNTS) {
+            ContentValues[] values = createWeatherRows(rowCount);
+
+            clearWeather(db);
+            long start = SystemClock.elapsedRealtimeNanos();
+            db.beginTransaction();
+            try {
+                for (ContentValues value : values) {
+                    db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            long insertNanos = SystemClock.elapsedRealtimeNanos() - start;
+            assertEquals(rowCount, countWeather(db));
+
+            clearWeather(db);
+            start = SystemClock.elapsedRealtimeNanos();
+            db.beginTransaction();
+            WeatherInsertStatement statement = new WeatherInsertStatement(db);
+            try {
+                for (ContentValues value : values) {
+                    assertTrue(WeatherInsertStatement.canInsert(value));
+                    assertTrue(statement.insert(value) != -1);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                statement.close();
+                db.endTransaction();
+            }
+            long statementNanos = SystemClock.elapsedRealtimeNanos() - start;
+            assertEquals(rowCount, countWeather(db));
+
+            Log.i(LOG_TAG, rowCount + " rows: SQLiteDatabase.insert " + insertNanos / 1000 +
+                    "us, WeatherInsertStatement " + statementNanos / 1000 + "us");
+        }
+    }
+
+    private ContentValues[] createWeatherRows(int rowCount) {
+        long millisecondsInADay = 1000 * 60 * 60 * 24;
+        ContentValues[] values = new ContentValues[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            ContentValues weatherValues = TestUtilities.createWeatherValues(mLocationRowId);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    TestUtilities.TEST_DATE + i * millisecondsInADay);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, 75 + i % 10);
+            values[i] = weatherValues;
+        }
+        return values;
+    }
+
+    private static void clearWeather(SQLiteDatabase db) {
+        db.delete(WeatherContract.WeatherEntry.TABLE_NAME, null, null);
+    }
+
+    private static long countWeather(SQLiteDatabase db) {
+        return DatabaseUtils.queryNumEntries(db, WeatherContract.WeatherEntry.TABLE_NAME);
+    }
+}
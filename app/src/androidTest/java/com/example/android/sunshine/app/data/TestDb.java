@@ -55,6 +55,7 @@ public class TestDb extends AndroidTestCase {
         final HashSet<String> tableNameHashSet = new HashSet<String>();
         tableNameHashSet.add(WeatherContract.LocationEntry.TABLE_NAME);
         tableNameHashSet.add(WeatherContract.WeatherEntry.TABLE_NAME);
+        tableNameHashSet.add(WeatherContract.HourlyEntry.TABLE_NAME);
 
         mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
         SQLiteDatabase db = new WeatherDbHelper(
@@ -105,6 +106,269 @@ public class TestDb extends AndroidTestCase {
         db.close();
     }
 
+    /*
+        Make sure the tuning from WeatherDbHelper.onConfigure is in effect on the connection.
+     */
+    public void testDatabaseTuning() {
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        assertTrue("Error: Write-ahead logging is not enabled", db.isWriteAheadLoggingEnabled());
+        assertEquals("Error: Wrong journal mode", "wal", queryPragma(db, "journal_mode"));
+        assertEquals("Error: Foreign keys are not enforced", "1", queryPragma(db, "foreign_keys"));
+        // NORMAL
+        assertEquals("Error: Wrong synchronous setting", "1", queryPragma(db, "synchronous"));
+        assertEquals("Error: Wrong cache size",
+                Integer.toString(-WeatherDbHelper.Tuning.DEFAULT.cacheSizeKb),
+                queryPragma(db, "cache_size"));
+        // NONE until the first compaction converts it, then INCREMENTAL
+        assertEquals("Error: Wrong auto_vacuum before compacting",
+                "0", queryPragma(db, "auto_vacuum"));
+        WeatherDbHelper.compact(db);
+        assertEquals("Error: Wrong auto_vacuum after compacting",
+                "2", queryPragma(db, "auto_vacuum"));
+        dbHelper.close();
+    }
+
+    /*
+        The forecast queries WeatherProvider runs for the list and the widgets must be answered
+        from the index, not by scanning the weather table.
+     */
+    public void testForecastQueriesUseIndexes() {
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        final String join = " FROM " + WeatherContract.WeatherEntry.TABLE_NAME + " INNER JOIN " +
+                WeatherContract.LocationEntry.TABLE_NAME + " ON " +
+                WeatherContract.WeatherEntry.TABLE_NAME + "." +
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = " +
+                WeatherContract.LocationEntry.TABLE_NAME + "." + WeatherContract.LocationEntry._ID +
+                " WHERE " + WeatherContract.LocationEntry.TABLE_NAME + "." +
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?";
+
+        // location.location_setting = ? AND date >= ?, as the forecast list asks for it
+        String plan = explainQueryPlan(db, "SELECT " +
+                WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID + ", " +
+                WeatherContract.WeatherEntry.COLUMN_DATE + ", " +
+                WeatherContract.WeatherEntry.COLUMN_SHORT_DESC + ", " +
+                WeatherContract.WeatherEntry.COLUMN_MAX_TEMP + ", " +
+                WeatherContract.WeatherEntry.COLUMN_MIN_TEMP + ", " +
+                WeatherContract.WeatherEntry.COLUMN_WEATHER_ID +
+                join + " AND " + WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? ORDER BY " +
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC",
+                new String[]{TestUtilities.TEST_LOCATION, Long.toString(TestUtilities.TEST_DATE)});
+        assertTrue("Error: Forecast query doesn't use the covering index: " + plan,
+                plan.contains("COVERING INDEX " + WeatherDbHelper.INDEX_WEATHER_FORECAST));
+
+        // location.location_setting = ?
+        plan = explainQueryPlan(db, "SELECT *" + join,
+                new String[]{TestUtilities.TEST_LOCATION});
+        assertTrue("Error: Location query doesn't use the forecast index: " + plan,
+                plan.contains(WeatherDbHelper.INDEX_WEATHER_FORECAST));
+
+        // location.location_setting = ? AND date = ?
+        plan = explainQueryPlan(db, "SELECT *" + join + " AND " +
+                        WeatherContract.WeatherEntry.COLUMN_DATE + " = ?",
+                new String[]{TestUtilities.TEST_LOCATION, Long.toString(TestUtilities.TEST_DATE)});
+        assertFalse("Error: Day query scans the weather table: " + plan,
+                plan.matches("(?s).*SCAN (TABLE )?" + WeatherContract.WeatherEntry.TABLE_NAME + "\\b.*"));
+        dbHelper.close();
+    }
+
+    public void testHourlyQueriesUseIndexes() {
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        // location.location_setting = ? AND time >= ?, as the hourly forecast asks for it
+        String plan = explainQueryPlan(db, "SELECT *" +
+                " FROM " + WeatherContract.HourlyEntry.TABLE_NAME + " INNER JOIN " +
+                WeatherContract.LocationEntry.TABLE_NAME + " ON " +
+                WeatherContract.HourlyEntry.TABLE_NAME + "." +
+                WeatherContract.HourlyEntry.COLUMN_LOC_KEY + " = " +
+                WeatherContract.LocationEntry.TABLE_NAME + "." + WeatherContract.LocationEntry._ID +
+                " WHERE " + WeatherContract.LocationEntry.TABLE_NAME + "." +
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
+                WeatherContract.HourlyEntry.COLUMN_TIME + " >= ? ORDER BY " +
+                WeatherContract.HourlyEntry.COLUMN_TIME + " ASC",
+                new String[]{TestUtilities.TEST_LOCATION, Long.toString(TestUtilities.TEST_HOUR)});
+        assertFalse("Error: Hourly query scans the hourly table: " + plan,
+                plan.matches("(?s).*SCAN (TABLE )?" + WeatherContract.HourlyEntry.TABLE_NAME + "\\b.*"));
+
+        // time < ?, as the sync prunes it
+        plan = explainQueryPlan(db, "SELECT " + WeatherContract.HourlyEntry._ID +
+                " FROM " + WeatherContract.HourlyEntry.TABLE_NAME +
+                " WHERE " + WeatherContract.HourlyEntry.COLUMN_TIME + " < ?",
+                new String[]{Long.toString(TestUtilities.TEST_HOUR)});
+        assertTrue("Error: Pruning hours doesn't use the time index: " + plan,
+                plan.contains(WeatherDbHelper.INDEX_HOURLY_TIME));
+        dbHelper.close();
+    }
+
+    /*
+        Every version from the oldest we migrate from up to the current one needs its Migration,
+        or an upgrade would fall back to wiping the cache.
+     */
+    public void testMigrationsCoverEveryVersion() {
+        int version = WeatherDbHelper.MIGRATIONS[0].startVersion;
+        for (Migration migration : WeatherDbHelper.MIGRATIONS) {
+            assertEquals("Error: Missing migration from version " + version,
+                    version, migration.startVersion);
+            version++;
+        }
+        assertEquals("Error: Migrations don't reach the current database version",
+                WeatherDbHelper.DATABASE_VERSION, version);
+    }
+
+    // The schema as version 2 shipped it.  Never change these.
+    private static final String V2_CREATE_LOCATION_TABLE = "CREATE TABLE location (" +
+            "_id INTEGER PRIMARY KEY,location_setting TEXT UNIQUE NOT NULL, " +
+            "city_name TEXT NOT NULL, coord_lat REAL NOT NULL, coord_long REAL NOT NULL  );";
+    private static final String V2_CREATE_WEATHER_TABLE = "CREATE TABLE weather (" +
+            "_id INTEGER PRIMARY KEY AUTOINCREMENT,location_id INTEGER NOT NULL, " +
+            "date INTEGER NOT NULL, short_desc TEXT NOT NULL, weather_id INTEGER NOT NULL," +
+            "min REAL NOT NULL, max REAL NOT NULL, humidity REAL NOT NULL, " +
+            "pressure REAL NOT NULL, wind REAL NOT NULL, degrees REAL NOT NULL, " +
+            " FOREIGN KEY (location_id) REFERENCES location (_id), " +
+            " UNIQUE (date, location_id) ON CONFLICT REPLACE);";
+
+    /*
+        Builds a version 2 database holding one location and one day of weather, the way a
+        device that hasn't been upgraded yet would have it.
+     */
+    private ContentValues createVersion2Database() {
+        mContext.getDatabasePath(WeatherDbHelper.DATABASE_NAME).getParentFile().mkdirs();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(
+                mContext.getDatabasePath(WeatherDbHelper.DATABASE_NAME), null);
+        db.execSQL(V2_CREATE_LOCATION_TABLE);
+        db.execSQL(V2_CREATE_WEATHER_TABLE);
+        long locationRowId = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null,
+                TestUtilities.createNorthPoleLocationValues());
+        assertTrue(locationRowId != -1);
+        ContentValues weatherValues = TestUtilities.createWeatherValues(locationRowId);
+        assertTrue(db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, weatherValues) != -1);
+        db.setVersion(2);
+        db.close();
+        return weatherValues;
+    }
+
+    public void testMigration2To3() {
+        ContentValues weatherValues = createVersion2Database();
+
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        assertTrue("Error: Database was not upgraded", db.getVersion() >= 3);
+
+        // The cached weather survived the upgrade
+        Cursor c = db.query(WeatherContract.WeatherEntry.TABLE_NAME, null, null, null,
+                null, null, null);
+        TestUtilities.validateCursor("Error: Weather was lost upgrading from version 2",
+                c, weatherValues);
+
+        // and the index is there
+        c = db.rawQuery("SELECT name FROM sqlite_master WHERE type='index' AND name = ?",
+                new String[]{WeatherDbHelper.INDEX_WEATHER_FORECAST});
+        assertTrue("Error: Upgrading from version 2 didn't create the forecast index",
+                c.moveToFirst());
+        c.close();
+        dbHelper.close();
+    }
+
+    public void testMigration3To4() {
+        // Version 3 is version 2 plus an index, which Migration2To3 adds as it always will.
+        ContentValues weatherValues = createVersion2Database();
+        SQLiteDatabase v3 = SQLiteDatabase.openDatabase(
+                mContext.getDatabasePath(WeatherDbHelper.DATABASE_NAME).getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE);
+        new Migration2To3().migrate(v3);
+        v3.setVersion(3);
+        v3.close();
+
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        assertTrue("Error: Database was not upgraded", db.getVersion() >= 4);
+
+        Cursor c = db.query(WeatherContract.WeatherEntry.TABLE_NAME, null, null, null,
+                null, null, null);
+        TestUtilities.validateCursor("Error: Weather was lost upgrading from version 3",
+                c, weatherValues);
+
+        // The hourly table is there and takes hours for the location we already had
+        long locationRowId = weatherValues.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+        ContentValues hourlyValues =
+                TestUtilities.createHourlyValues(locationRowId, TestUtilities.TEST_HOUR);
+        assertTrue("Error: Unable to insert into the hourly table after upgrading",
+                db.insert(WeatherContract.HourlyEntry.TABLE_NAME, null, hourlyValues) != -1);
+
+        c = db.rawQuery("SELECT name FROM sqlite_master WHERE type='index' AND name = ?",
+                new String[]{WeatherDbHelper.INDEX_HOURLY_TIME});
+        assertTrue("Error: Upgrading from version 3 didn't create the hourly time index",
+                c.moveToFirst());
+        c.close();
+        dbHelper.close();
+    }
+
+    /*
+        The first compaction converts the database to incremental auto_vacuum, and the ones after
+        it give the pages freed by deleted rows back to the file system.
+     */
+    public void testCompact() {
+        ContentValues weatherValues = createVersion2Database();
+        long locationRowId = weatherValues.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        WeatherDbHelper.compact(db);
+        assertEquals("Error: Compacting didn't turn on incremental auto_vacuum",
+                "2", queryPragma(db, "auto_vacuum"));
+
+        // Fill a few hundred pages, then empty them again
+        final long hour = 1000 * 60 * 60;
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < 5000; i++) {
+                assertTrue(db.insert(WeatherContract.HourlyEntry.TABLE_NAME, null,
+                        TestUtilities.createHourlyValues(locationRowId,
+                                TestUtilities.TEST_HOUR + i * hour)) != -1);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        db.delete(WeatherContract.HourlyEntry.TABLE_NAME, null, null);
+        assertTrue("Error: Deleting rows left no free pages",
+                Long.parseLong(queryPragma(db, "freelist_count")) > 0);
+
+        long reclaimed = WeatherDbHelper.compact(db);
+        assertTrue("Error: Compacting reclaimed nothing", reclaimed > 0);
+        assertEquals("Error: Compacting left free pages behind",
+                "0", queryPragma(db, "freelist_count"));
+
+        // and the weather that was there all along is still there
+        Cursor c = db.query(WeatherContract.WeatherEntry.TABLE_NAME, null, null, null,
+                null, null, null);
+        TestUtilities.validateCursor("Error: Compacting lost weather", c, weatherValues);
+        dbHelper.close();
+    }
+
+    static String explainQueryPlan(SQLiteDatabase db, String sql, String[] selectionArgs) {
+        Cursor c = db.rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs);
+        int detailIndex = c.getColumnIndex("detail");
+        StringBuilder plan = new StringBuilder();
+        while (c.moveToNext()) {
+            plan.append(c.getString(detailIndex)).append('\n');
+        }
+        c.close();
+        return plan.toString();
+    }
+
+    static String queryPragma(SQLiteDatabase db, String pragma) {
+        Cursor c = db.rawQuery("PRAGMA " + pragma, null);
+        assertTrue("Error: Unable to query PRAGMA " + pragma, c.moveToFirst());
+        String value = c.getString(0);
+        c.close();
+        return value;
+    }
+
     /*
         Students:  Here is where you will build code to test that we can insert and query the
         location database.  We've done a lot of work for you.  You'll want to look in TestUtilities
@@ -16,6 +16,8 @@
 package com.example.android.sunshine.app.data;
 
 import android.content.ComponentName;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.pm.PackageManager;
@@ -27,9 +29,12 @@ import android.os.Build;
 import android.test.AndroidTestCase;
 import android.util.Log;
 
+import com.example.android.sunshine.app.data.WeatherContract.HourlyEntry;
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
+import java.util.ArrayList;
+
 /*
     Note: This is not a complete set of tests of the Sunshine ContentProvider, but it does test
     that at least the basic functionality has been implemented correctly.
@@ -51,6 +56,11 @@ public class TestProvider extends AndroidTestCase {
        the delete functionality in the ContentProvider.
      */
     public void deleteAllRecordsFromProvider() {
+        mContext.getContentResolver().delete(
+                HourlyEntry.CONTENT_URI,
+                null,
+                null
+        );
         mContext.getContentResolver().delete(
                 WeatherEntry.CONTENT_URI,
                 null,
@@ -72,6 +82,16 @@ public class TestProvider extends AndroidTestCase {
         assertEquals("Error: Records not deleted from Weather table during delete", 0, cursor.getCount());
         cursor.close();
 
+        cursor = mContext.getContentResolver().query(
+                HourlyEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                null
+        );
+        assertEquals("Error: Records not deleted from Hourly table during delete", 0, cursor.getCount());
+        cursor.close();
+
         cursor = mContext.getContentResolver().query(
                 LocationEntry.CONTENT_URI,
                 null,
@@ -155,6 +175,13 @@ public class TestProvider extends AndroidTestCase {
         assertEquals("Error: the WeatherEntry CONTENT_URI with location and date should return WeatherEntry.CONTENT_ITEM_TYPE",
                 WeatherEntry.CONTENT_ITEM_TYPE, type);
 
+        // content://com.example.android.sunshine.app/hourly/94074
+        type = mContext.getContentResolver().getType(
+                HourlyEntry.buildHourlyLocation(testLocation));
+        // vnd.android.cursor.dir/com.example.android.sunshine.app/hourly
+        assertEquals("Error: the HourlyEntry CONTENT_URI with location should return HourlyEntry.CONTENT_TYPE",
+                HourlyEntry.CONTENT_TYPE, type);
+
         // content://com.example.android.sunshine.app/location/
         type = mContext.getContentResolver().getType(LocationEntry.CONTENT_URI);
         // vnd.android.cursor.dir/com.example.android.sunshine.app/location
@@ -287,6 +314,49 @@ public class TestProvider extends AndroidTestCase {
     }
 
 
+    // Syncing an unchanged forecast inserts its location again.  That must leave the row as it
+    // is and tell nobody, while a changed city is still written and notified.
+    public void testInsertUnchangedLocation() {
+        ContentValues values = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, values);
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        // Observers are called in order, so once the hourly notification below arrives, any
+        // notification of the unchanged insert would have arrived before it.
+        TestUtilities.TestContentObserver tco = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(
+                WeatherContract.BASE_CONTENT_URI, true, tco);
+        locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI,
+                TestUtilities.createNorthPoleLocationValues());
+        assertEquals(locationRowId, ContentUris.parseId(locationUri));
+        mContext.getContentResolver().notifyChange(HourlyEntry.CONTENT_URI, null);
+        tco.waitForNotificationOrFail();
+        mContext.getContentResolver().unregisterContentObserver(tco);
+        assertEquals("Error: Inserting an unchanged location notified observers",
+                HourlyEntry.CONTENT_URI, tco.mFirstChange);
+
+        ContentValues updatedValues = TestUtilities.createNorthPoleLocationValues();
+        updatedValues.put(LocationEntry.COLUMN_CITY_NAME, "Santa's Village");
+        tco = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(LocationEntry.CONTENT_URI, true, tco);
+        locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI,
+                updatedValues);
+        assertEquals(locationRowId, ContentUris.parseId(locationUri));
+        tco.waitForNotificationOrFail();
+        mContext.getContentResolver().unregisterContentObserver(tco);
+
+        Cursor cursor = mContext.getContentResolver().query(
+                LocationEntry.CONTENT_URI,
+                null,
+                LocationEntry._ID + " = " + locationRowId,
+                null,
+                null
+        );
+        TestUtilities.validateCursor("testInsertUnchangedLocation.  Error validating location "
+                + "entry update.", cursor, updatedValues);
+        cursor.close();
+    }
+
     // Make sure we can still delete after adding/updating stuff
     //
     // Student: Uncomment this test after you have completed writing the insert functionality
@@ -512,4 +582,166 @@ public class TestProvider extends AndroidTestCase {
         }
         cursor.close();
     }
+
+    // Re-inserting a forecast that hasn't changed must leave the stored rows alone, and only the
+    // rows that did change get replaced.
+    public void testBulkInsertSkipsUnchangedRows() {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, testValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        ContentValues[] bulkInsertContentValues = createBulkInsertWeatherValues(locationRowId);
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, bulkInsertContentValues);
+        long[] firstIds = queryWeatherIdsByDate();
+
+        // The same forecast again.  Every row is accounted for, but none is rewritten.
+        bulkInsertContentValues = createBulkInsertWeatherValues(locationRowId);
+        int insertCount = mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI,
+                bulkInsertContentValues);
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, insertCount);
+        long[] secondIds = queryWeatherIdsByDate();
+        for (int i = 0; i < BULK_INSERT_RECORDS_TO_INSERT; i++) {
+            assertEquals("Error: Unchanged weather row " + i + " was rewritten",
+                    firstIds[i], secondIds[i]);
+        }
+
+        // Now change a single day.  Only that row gets replaced.
+        bulkInsertContentValues = createBulkInsertWeatherValues(locationRowId);
+        bulkInsertContentValues[3].put(WeatherEntry.COLUMN_MAX_TEMP, 99);
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(WeatherEntry.CONTENT_URI, true, weatherObserver);
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, bulkInsertContentValues);
+        weatherObserver.waitForNotificationOrFail();
+        mContext.getContentResolver().unregisterContentObserver(weatherObserver);
+
+        long[] thirdIds = queryWeatherIdsByDate();
+        for (int i = 0; i < BULK_INSERT_RECORDS_TO_INSERT; i++) {
+            if (i == 3) {
+                assertFalse("Error: Changed weather row was not replaced", firstIds[i] == thirdIds[i]);
+            } else {
+                assertEquals("Error: Unchanged weather row " + i + " was rewritten",
+                        firstIds[i], thirdIds[i]);
+            }
+        }
+    }
+
+    // Hours go in on the hour, one row per hour and location however often they are written,
+    // and come back out from a start time on.
+    public void testBulkInsertHourly() {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, testValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        final long threeHours = 1000 * 60 * 60 * 3;
+        ContentValues[] hourlyValues = new ContentValues[BULK_INSERT_RECORDS_TO_INSERT];
+        for (int i = 0; i < BULK_INSERT_RECORDS_TO_INSERT; i++) {
+            // A few seconds past the hour, which the provider drops
+            hourlyValues[i] = TestUtilities.createHourlyValues(locationRowId,
+                    TestUtilities.TEST_HOUR + i * threeHours + 42 * 1000);
+        }
+
+        TestUtilities.TestContentObserver hourlyObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(HourlyEntry.CONTENT_URI, true, hourlyObserver);
+        int insertCount = mContext.getContentResolver().bulkInsert(HourlyEntry.CONTENT_URI, hourlyValues);
+        hourlyObserver.waitForNotificationOrFail();
+        mContext.getContentResolver().unregisterContentObserver(hourlyObserver);
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, insertCount);
+
+        // Writing the same hours again replaces them
+        mContext.getContentResolver().bulkInsert(HourlyEntry.CONTENT_URI, hourlyValues);
+
+        Cursor cursor = mContext.getContentResolver().query(
+                HourlyEntry.buildHourlyLocationWithStartTime(TestUtilities.TEST_LOCATION,
+                        TestUtilities.TEST_HOUR + 4 * threeHours),
+                null,
+                null,
+                null,
+                HourlyEntry.COLUMN_TIME + " ASC"
+        );
+        assertEquals("Error: Wrong number of hours from the start time on",
+                BULK_INSERT_RECORDS_TO_INSERT - 4, cursor.getCount());
+        for (int i = 4; cursor.moveToNext(); i++) {
+            TestUtilities.validateCurrentRecord("testBulkInsertHourly.  Error validating hour " + i,
+                    cursor, TestUtilities.createHourlyValues(locationRowId,
+                            TestUtilities.TEST_HOUR + i * threeHours));
+        }
+        cursor.close();
+    }
+
+    private long[] queryWeatherIdsByDate() {
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.CONTENT_URI,
+                new String[]{WeatherEntry._ID},
+                null,
+                null,
+                WeatherEntry.COLUMN_DATE + " ASC"
+        );
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+        long[] ids = new long[cursor.getCount()];
+        for (int i = 0; cursor.moveToNext(); i++) {
+            ids[i] = cursor.getLong(0);
+        }
+        cursor.close();
+        return ids;
+    }
+
+    // A sync stores the location, its weather and the stale-data delete as one batch.  Make sure
+    // the weather rows pick up the location id, and that re-inserting the same location keeps it.
+    public void testApplyBatch() throws Exception {
+        ContentValues locationValues = TestUtilities.createNorthPoleLocationValues();
+        ContentValues[] weatherValues = createBulkInsertWeatherValues(0);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        operations.add(ContentProviderOperation.newInsert(LocationEntry.CONTENT_URI)
+                .withValues(locationValues)
+                .build());
+        for (ContentValues values : weatherValues) {
+            operations.add(ContentProviderOperation.newInsert(WeatherEntry.CONTENT_URI)
+                    .withValues(values)
+                    .withValueBackReference(WeatherEntry.COLUMN_LOC_KEY, 0)
+                    .build());
+        }
+        // Drops the first day again
+        operations.add(ContentProviderOperation.newDelete(WeatherEntry.CONTENT_URI)
+                .withSelection(WeatherEntry.COLUMN_DATE + " <= ?",
+                        new String[]{Long.toString(TestUtilities.TEST_DATE)})
+                .build());
+
+        TestUtilities.TestContentObserver weatherObserver = TestUtilities.getTestContentObserver();
+        mContext.getContentResolver().registerContentObserver(WeatherEntry.CONTENT_URI, true, weatherObserver);
+        ContentProviderResult[] results = mContext.getContentResolver()
+                .applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+        weatherObserver.waitForNotificationOrFail();
+        mContext.getContentResolver().unregisterContentObserver(weatherObserver);
+
+        long locationRowId = ContentUris.parseId(results[0].uri);
+        assertEquals(1, (int) results[results.length - 1].count);
+
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.CONTENT_URI,
+                new String[]{WeatherEntry.COLUMN_LOC_KEY},
+                null,
+                null,
+                null
+        );
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT - 1, cursor.getCount());
+        while (cursor.moveToNext()) {
+            assertEquals(locationRowId, cursor.getLong(0));
+        }
+        cursor.close();
+
+        // Inserting the same location setting again updates it in place.
+        locationValues.put(LocationEntry.COLUMN_CITY_NAME, "Santa's Village");
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, locationValues);
+        assertEquals(locationRowId, ContentUris.parseId(locationUri));
+        cursor = mContext.getContentResolver().query(
+                LocationEntry.CONTENT_URI,
+                null,
+                null,
+                null,
+                null
+        );
+        TestUtilities.validateCursor("testApplyBatch. Error validating updated LocationEntry.",
+                cursor, locationValues);
+    }
 }
@@ -38,6 +38,7 @@ import java.util.Set;
 public class TestUtilities extends AndroidTestCase {
     static final String TEST_LOCATION = "99705";
     static final long TEST_DATE = 1419033600L;  // December 20th, 2014
+    static final long TEST_HOUR = 1419033600000L;  // midnight UTC, December 20th, 2014
 
     static void validateCursor(String error, Cursor valueCursor, ContentValues expectedValues) {
         assertTrue("Empty cursor returned. " + error, valueCursor.moveToFirst());
@@ -77,6 +78,21 @@ public class TestUtilities extends AndroidTestCase {
         return weatherValues;
     }
 
+    static ContentValues createHourlyValues(long locationRowId, long time) {
+        ContentValues hourlyValues = new ContentValues();
+        hourlyValues.put(WeatherContract.HourlyEntry.COLUMN_LOC_KEY, locationRowId);
+        hourlyValues.put(WeatherContract.HourlyEntry.COLUMN_TIME, time);
+        hourlyValues.put(WeatherContract.HourlyEntry.COLUMN_DEGREES, 1.1);
+        hourlyValues.put(WeatherContract.HourlyEntry.COLUMN_HUMIDITY, 1.2);
+        hourlyValues.put(WeatherContract.HourlyEntry.COLUMN_PRESSURE, 1.3);
+        hourlyValues.put(WeatherContract.HourlyEntry.COLUMN_TEMP, 70);
+        hourlyValues.put(WeatherContract.HourlyEntry.COLUMN_SHORT_DESC, "Asteroids");
+        hourlyValues.put(WeatherContract.HourlyEntry.COLUMN_WIND_SPEED, 5.5);
+        hourlyValues.put(WeatherContract.HourlyEntry.COLUMN_WEATHER_ID, 321);
+
+        return hourlyValues;
+    }
+
     /*
         Students: You can uncomment this helper function once you have finished creating the
         LocationEntry part of the WeatherContract.
@@ -122,6 +138,8 @@ public class TestUtilities extends AndroidTestCase {
     static class TestContentObserver extends ContentObserver {
         final HandlerThread mHT;
         boolean mContentChanged;
+        // The uri of the first change we were told about
+        volatile Uri mFirstChange;
 
         static TestContentObserver getTestContentObserver() {
             HandlerThread ht = new HandlerThread("ContentObserverThread");
@@ -142,6 +160,9 @@ public class TestUtilities extends AndroidTestCase {
 
         @Override
         public void onChange(boolean selfChange, Uri uri) {
+            if (!mContentChanged) {
+                mFirstChange = uri;
+            }
             mContentChanged = true;
         }
 
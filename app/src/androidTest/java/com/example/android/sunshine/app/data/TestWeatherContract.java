@@ -16,7 +16,13 @@
 package com.example.android.sunshine.app.data;
 
 import android.net.Uri;
+import android.os.Debug;
+import android.os.SystemClock;
 import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+
+import java.util.TimeZone;
 
 /*
     Students: This is NOT a complete test for the WeatherContract --- just for the functions
@@ -24,6 +30,8 @@ import android.test.AndroidTestCase;
  */
 public class TestWeatherContract extends AndroidTestCase {
 
+    public static final String LOG_TAG = TestWeatherContract.class.getSimpleName();
+
     // intentionally includes a slash to make sure Uri is getting quoted correctly
     private static final String TEST_WEATHER_LOCATION = "/North Pole";
     private static final long TEST_WEATHER_DATE = 1419033600L;  // December 20th, 2014
@@ -42,4 +50,124 @@ public class TestWeatherContract extends AndroidTestCase {
                 locationUri.toString(),
                 "content://com.example.android.sunshine.app/weather/%2FNorth%20Pole");
     }
+
+    // Zones with DST changes at odd hours, half hour DST, odd offsets, and none at all.
+    // Zones that skip midnight itself are left out: there the start of the day is defined
+    // differently by Time and by normalizeDate.
+    private static final String[] TEST_TIME_ZONES = {
+            "UTC",
+            "America/Los_Angeles",
+            "Europe/London",
+            "Australia/Lord_Howe",
+            "Asia/Kathmandu",
+            "Pacific/Chatham",
+            "Asia/Tokyo"
+    };
+
+    // The way normalizeDate used to work, as the reference for the current implementation.
+    private static long normalizeDateWithTime(long startDate) {
+        Time time = new Time();
+        time.set(startDate);
+        int julianDay = Time.getJulianDay(startDate, time.gmtoff);
+        return time.setJulianDay(julianDay);
+    }
+
+    /*
+        normalizeDate must agree with the Time based implementation it replaced, every quarter
+        of an hour over two years, including both sides of every midnight, in a range of zones.
+     */
+    public void testNormalizeDateMatchesTime() {
+        final long quarterHour = 15 * 60 * 1000;
+        final long start = 1420070400000L;  // January 1st, 2015 UTC
+        final long end = start + 2 * 365 * 24 * 60 * 60 * 1000L;
+
+        TimeZone defaultZone = TimeZone.getDefault();
+        try {
+            for (String zoneId : TEST_TIME_ZONES) {
+                TimeZone.setDefault(TimeZone.getTimeZone(zoneId));
+                WeatherContract.onTimeZoneChanged();
+                for (long date = start; date < end; date += quarterHour) {
+                    long expected = normalizeDateWithTime(date);
+                    assertEquals("Error: normalizeDate(" + date + ") in " + zoneId,
+                            expected, WeatherContract.normalizeDate(date));
+                    // the last millisecond of the previous day
+                    assertEquals("Error: normalizeDate(" + (expected - 1) + ") in " + zoneId,
+                            normalizeDateWithTime(expected - 1),
+                            WeatherContract.normalizeDate(expected - 1));
+                }
+            }
+        } finally {
+            TimeZone.setDefault(defaultZone);
+            WeatherContract.onTimeZoneChanged();
+        }
+    }
+
+    /*
+        Once the offset is cached, normalizing dates on different days, back and forth, must
+        neither replace the cache nor allocate anything.
+     */
+    @SuppressWarnings("deprecation")
+    public void testNormalizeDateDoesNotAllocate() {
+        final long day = 24 * 60 * 60 * 1000;
+        final long start = 1419033600000L;  // December 20th, 2014 UTC
+        // No daylight saving time change for weeks on either side of these dates
+        TimeZone defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+        WeatherContract.onTimeZoneChanged();
+        try {
+            // Warm up
+            long sink = WeatherContract.normalizeDate(start);
+            WeatherContract.OffsetWindow window = WeatherContract.sOffsetWindow;
+            assertNotNull("Error: normalizeDate didn't cache the offset", window);
+
+            Debug.startAllocCounting();
+            Debug.resetThreadAllocCount();
+            for (int i = 0; i < 1000; i++) {
+                // alternating between dates a week apart, and a "now" in between
+                sink += WeatherContract.normalizeDate(start + (i % 2) * 7 * day + i);
+                sink += WeatherContract.normalizeDate(start + 3 * day + 12 * 60 * 60 * 1000);
+            }
+            int allocations = Debug.getThreadAllocCount();
+            Debug.stopAllocCounting();
+
+            assertSame("Error: normalizeDate replaced the cached offset",
+                    window, WeatherContract.sOffsetWindow);
+            assertEquals("Error: normalizeDate allocated (" + sink + ")", 0, allocations);
+        } finally {
+            TimeZone.setDefault(defaultZone);
+            WeatherContract.onTimeZoneChanged();
+        }
+    }
+
+    /*
+        Times normalizeDate against the Time based implementation, the way a sync and a list
+        of forecast days call it: a run of dates within a few days.  The timings end up in logcat.
+     */
+    public void testNormalizeDatePerformance() {
+        final int iterations = 100000;
+        final long hour = 60 * 60 * 1000;
+        final long start = 1419033600000L;  // December 20th, 2014 UTC
+        long sink = 0;
+
+        // Warm up both, so the first one measured isn't paying for the other's class loading
+        for (int i = 0; i < 1000; i++) {
+            sink += normalizeDateWithTime(start + i * hour);
+            sink += WeatherContract.normalizeDate(start + i * hour);
+        }
+
+        long begin = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < iterations; i++) {
+            sink += normalizeDateWithTime(start + (i % 336) * hour);
+        }
+        long timeNanos = SystemClock.elapsedRealtimeNanos() - begin;
+
+        begin = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < iterations; i++) {
+            sink += WeatherContract.normalizeDate(start + (i % 336) * hour);
+        }
+        long arithmeticNanos = SystemClock.elapsedRealtimeNanos() - begin;
+
+        Log.i(LOG_TAG, "normalizeDate x" + iterations + ": Time " + timeNanos / iterations +
+                "ns/call, arithmetic " + arithmeticNanos / iterations + "ns/call (" + sink + ")");
+    }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentValues;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.io.ByteArrayInputStream;
+
+public class TestForecastJsonParser extends AndroidTestCase {
+
+    private static final int JULIAN_START_DAY = 2457012;  // December 20th, 2014
+
+    private static final String COMPLETE_DAY = "{\"dt\":1419076800,"
+            + "\"temp\":{\"day\":-3.5,\"min\":-8.1,\"max\":-2.4,\"night\":-8.1},"
+            + "\"pressure\":1012.3,\"humidity\":85,"
+            + "\"weather\":[{\"id\":600,\"main\":\"Snow\",\"description\":\"light snow\"}],"
+            + "\"speed\":1.2,\"deg\":270}";
+
+    // No "weather" array, so neither a weather id nor a description
+    private static final String INCOMPLETE_DAY = "{\"dt\":1419163200,"
+            + "\"temp\":{\"day\":-1.5,\"min\":-6.0,\"max\":-0.5,\"night\":-6.0},"
+            + "\"pressure\":1010.1,\"humidity\":80,"
+            + "\"speed\":2.0,\"deg\":180}";
+
+    private static final String FORECAST = "{\"cod\":\"200\","
+            + "\"city\":{\"name\":\"North Pole\",\"coord\":{\"lon\":-147.35,\"lat\":64.75}},"
+            + "\"list\":[" + COMPLETE_DAY + "," + INCOMPLETE_DAY + "," + COMPLETE_DAY + "]}";
+
+    /*
+        A day that is missing a column the weather table requires must be left out, without
+        shifting the dates of the days after it.
+     */
+    public void testIncompleteDayIsSkipped() throws Exception {
+        ForecastJsonParser.Forecast forecast = new ForecastJsonParser(JULIAN_START_DAY)
+                .parse(new ByteArrayInputStream(FORECAST.getBytes("UTF-8")));
+
+        assertEquals("Error: Wrong city", "North Pole", forecast.cityName);
+        assertEquals("Error: The incomplete day wasn't left out",
+                2, forecast.weatherValues.size());
+
+        Time dayTime = new Time();
+        ContentValues first = forecast.weatherValues.get(0);
+        assertEquals("Error: Wrong date for the first day", dayTime.setJulianDay(JULIAN_START_DAY),
+                (long) first.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE));
+        assertEquals("Error: Wrong weather id for the first day",
+                600, (int) first.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID));
+        ContentValues third = forecast.weatherValues.get(1);
+        assertEquals("Error: Wrong date for the day after the incomplete one",
+                dayTime.setJulianDay(JULIAN_START_DAY + 2),
+                (long) third.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE));
+    }
+}
@@ -16,7 +16,6 @@
 package com.example.android.sunshine.app;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.v4.view.ViewCompat;
@@ -31,11 +30,12 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
-import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.List;
 
 /**
  * {@link ForecastAdapter} exposes a list of weather forecasts
- * from a {@link android.database.Cursor} to a {@link android.support.v7.widget.RecyclerView}.
+ * from {@link ForecastRows} to a {@link android.support.v7.widget.RecyclerView}.
  */
 public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder> {
 
@@ -45,7 +45,7 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
     // Flag to determine if we want to use a separate view for "today".
     private boolean mUseTodayLayout = true;
 
-    private Cursor mCursor;
+    private ForecastRows mRows = ForecastRows.EMPTY;
     final private Context mContext;
     final private ForecastAdapterOnClickHandler mClickHandler;
     final private View mEmptyView;
@@ -74,15 +74,13 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            mCursor.moveToPosition(adapterPosition);
-            int dateColumnIndex = mCursor.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
-            mClickHandler.onClick(mCursor.getLong(dateColumnIndex), this);
+            if (adapterPosition == RecyclerView.NO_POSITION) {
+                // Removed, and on its way out
+                return;
+            }
+            mClickHandler.onClick(mRows.rows.get(adapterPosition).date, this);
             mICM.onClick(this);
         }
-
-        public ImageView getSelectedImage(){
-            return mIconView;
-        }
     }
 
     public static interface ForecastAdapterOnClickHandler {
@@ -93,6 +91,8 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         mContext = context;
         mClickHandler = dh;
         mEmptyView = emptyView;
+        // Before anything observes us
+        setHasStableIds(true);
         mICM = new ItemChoiceManager(this);
         mICM.setChoiceMode(choiceMode);
     }
@@ -127,71 +127,64 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         }
     }
 
+    /**
+     * Each day of the list is known by its date, which is unique within the list and, unlike
+     * the row id, stays the same when a sync replaces the day's weather.
+     */
     @Override
     public long getItemId(int position) {
-        return super.getItemId(position);
+        return mRows.rows.get(position).date;
     }
 
 
     @Override
     public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position) {
-        mCursor.moveToPosition(position);
-        int weatherId = mCursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+        ForecastRow row = mRows.rows.get(position);
         int defaultImage;
-        boolean useLongToday;
+        String date;
 
         switch (getItemViewType(position)) {
             case VIEW_TYPE_TODAY:
-                defaultImage = Utility.getArtResourceForWeatherCondition(weatherId);
-                useLongToday = true;
+                defaultImage = row.artResource;
+                date = row.longDate;
                 break;
             default:
-                defaultImage = Utility.getIconResourceForWeatherCondition(weatherId);
-                useLongToday = false;
+                defaultImage = row.iconResource;
+                date = row.shortDate;
         }
 
-        if ( Utility.usingLocalGraphics(mContext) ) {
+        if ( row.artUrl == null ) {
+            Glide.clear(forecastAdapterViewHolder.mIconView);
             forecastAdapterViewHolder.mIconView.setImageResource(defaultImage);
         } else {
             Glide.with(mContext)
-                    .load(Utility.getArtUrlForWeatherCondition(mContext, weatherId))
+                    .load(row.artUrl)
                     .error(defaultImage)
                     .crossFade()
                     .into(forecastAdapterViewHolder.mIconView);
         }
 
         // this enables better animations. even if we lose state due to a device rotation,
-        // the animator can use this to re-find the original view
-        ViewCompat.setTransitionName(forecastAdapterViewHolder.mIconView, "iconView" + position);
-
-        // Read date from cursor
-        long dateInMillis = mCursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+        // the animator can use this to re-find the original view.  Rows move without being
+        // bound again, so the name goes by date rather than position.
+        ViewCompat.setTransitionName(forecastAdapterViewHolder.mIconView, "iconView" + row.date);
 
         // Find TextView and set formatted date on it
-        forecastAdapterViewHolder.mDateView.setText(Utility.getFriendlyDayString(mContext, dateInMillis, useLongToday));
-
-        // Read weather forecast from cursor
-        String description = Utility.getStringForWeatherCondition(mContext, weatherId);
+        forecastAdapterViewHolder.mDateView.setText(date);
 
         // Find TextView and set weather forecast on it
-        forecastAdapterViewHolder.mDescriptionView.setText(description);
-        forecastAdapterViewHolder.mDescriptionView.setContentDescription(mContext.getString(R.string.a11y_forecast, description));
+        forecastAdapterViewHolder.mDescriptionView.setText(row.description);
+        forecastAdapterViewHolder.mDescriptionView.setContentDescription(row.descriptionA11y);
 
         // For accessibility, we don't want a content description for the icon field
         // because the information is repeated in the description view and the icon
         // is not individually selectable
 
-        // Read high temperature from cursor
-        double high = mCursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP);
-        String highString = Utility.formatTemperature(mContext, high);
-        forecastAdapterViewHolder.mHighTempView.setText(highString);
-        forecastAdapterViewHolder.mHighTempView.setContentDescription(mContext.getString(R.string.a11y_high_temp, highString));
+        forecastAdapterViewHolder.mHighTempView.setText(row.high);
+        forecastAdapterViewHolder.mHighTempView.setContentDescription(row.highA11y);
 
-        // Read low temperature from cursor
-        double low = mCursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP);
-        String lowString = Utility.formatTemperature(mContext, low);
-        forecastAdapterViewHolder.mLowTempView.setText(lowString);
-        forecastAdapterViewHolder.mLowTempView.setContentDescription(mContext.getString(R.string.a11y_low_temp, lowString));
+        forecastAdapterViewHolder.mLowTempView.setText(row.low);
+        forecastAdapterViewHolder.mLowTempView.setContentDescription(row.lowA11y);
 
         mICM.onBindViewHolder(forecastAdapterViewHolder, position);
     }
@@ -219,18 +212,55 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
 
     @Override
     public int getItemCount() {
-        if ( null == mCursor ) return 0;
-        return mCursor.getCount();
+        return mRows.rows.size();
     }
 
-    public void swapCursor(Cursor newCursor) {
-        mCursor = newCursor;
-        notifyDataSetChanged();
+    /**
+     * Shows the given rows in place of the ones we have.  Only the days that were added,
+     * removed or changed are notified, so the rest of the list stays as it is.
+     *
+     * @param newRows the rows to show, or null for none
+     */
+    public void swapRows(ForecastRows newRows) {
+        if (newRows == null) {
+            newRows = ForecastRows.EMPTY;
+        }
+        List<ForecastRow> oldList = mRows.rows;
+        List<ForecastRow> newList = newRows.rows;
+        mRows = newRows;
+
+        // Both lists are sorted by date, which is unique within each, so walking them side by
+        // side pairs up the days they share.  Positions are of the list as notified so far.
+        int oldIndex = 0;
+        int newIndex = 0;
+        while (oldIndex < oldList.size() || newIndex < newList.size()) {
+            if (newIndex == newList.size() || (oldIndex < oldList.size()
+                    && oldList.get(oldIndex).date < newList.get(newIndex).date)) {
+                notifyItemRemoved(newIndex);
+                oldIndex++;
+            } else if (oldIndex == oldList.size()
+                    || newList.get(newIndex).date < oldList.get(oldIndex).date) {
+                notifyItemInserted(newIndex);
+                newIndex++;
+            } else {
+                if (!oldList.get(oldIndex).hasSameContents(newList.get(newIndex))) {
+                    notifyItemChanged(newIndex);
+                }
+                oldIndex++;
+                newIndex++;
+            }
+        }
+        // The top of the list has a layout of its own, and a new day may have moved up to it.
+        if (mUseTodayLayout && !oldList.isEmpty() && !newList.isEmpty()
+                && oldList.get(0).date != newList.get(0).date) {
+            notifyItemChanged(0);
+        }
+
         mEmptyView.setVisibility(getItemCount() == 0 ? View.VISIBLE : View.GONE);
     }
 
-    public Cursor getCursor() {
-        return mCursor;
+    public ForecastRows getRows() {
+        return mRows;
     }
 
     public void selectView(RecyclerView.ViewHolder viewHolder) {
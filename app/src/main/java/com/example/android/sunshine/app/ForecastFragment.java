@@ -20,9 +20,6 @@ import android.app.Activity;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.res.TypedArray;
-import android.database.Cursor;
-import android.graphics.Bitmap;
-import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Build;
@@ -31,7 +28,6 @@ import android.preference.PreferenceManager;
 import android.support.design.widget.AppBarLayout;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.view.menu.MenuView;
@@ -47,26 +43,15 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
 import android.widget.AbsListView;
-import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.common.api.ResultCallback;
-import com.google.android.gms.wearable.Asset;
-import com.google.android.gms.wearable.DataApi;
-import com.google.android.gms.wearable.PutDataMapRequest;
-import com.google.android.gms.wearable.PutDataRequest;
-import com.google.android.gms.wearable.Wearable;
-
-import java.io.ByteArrayOutputStream;
 
 /**
  * Encapsulates fetching the forecast and displaying it as a {@link android.support.v7.widget.RecyclerView} layout.
  */
-public class ForecastFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor>, SharedPreferences.OnSharedPreferenceChangeListener, GoogleApiClient.ConnectionCallbacks,GoogleApiClient.OnConnectionFailedListener {
+public class ForecastFragment extends Fragment implements LoaderManager.LoaderCallbacks<ForecastRows>, SharedPreferences.OnSharedPreferenceChangeListener {
     public static final String LOG_TAG = ForecastFragment.class.getSimpleName();
     private ForecastAdapter mForecastAdapter;
     private RecyclerView mRecyclerView;
@@ -74,61 +59,9 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     private int mChoiceMode;
     private boolean mHoldForTransition;
     private long mInitialSelectedDate = -1;
-    private int mWeatherId;
-    private Bitmap mWeatherImage;
-    private String mShortText;
-    private int mHighTemp;
-    private int mLowTemp;
-    private GoogleApiClient mGoogleApiClient;
     private static final String SELECTED_KEY = "selected_position";
 
     private static final int FORECAST_LOADER = 0;
-    // For the forecast view we're showing only a small subset of the stored data.
-    // Specify the columns we need.
-    private static final String[] FORECAST_COLUMNS = {
-            // In this case the id needs to be fully qualified with a table name, since
-            // the content provider joins the location & weather tables in the background
-            // (both have an _id column)
-            // On the one hand, that's annoying.  On the other, you can search the weather table
-            // using the location set by the user, which is only in the Location table.
-            // So the convenience is worth it.
-            WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID,
-            WeatherContract.WeatherEntry.COLUMN_DATE,
-            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
-            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
-            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
-            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
-            WeatherContract.LocationEntry.COLUMN_COORD_LAT,
-            WeatherContract.LocationEntry.COLUMN_COORD_LONG
-    };
-
-    // These indices are tied to FORECAST_COLUMNS.  If FORECAST_COLUMNS changes, these
-    // must change.
-    static final int COL_WEATHER_ID = 0;
-    static final int COL_WEATHER_DATE = 1;
-    static final int COL_WEATHER_DESC = 2;
-    static final int COL_WEATHER_MAX_TEMP = 3;
-    static final int COL_WEATHER_MIN_TEMP = 4;
-    static final int COL_LOCATION_SETTING = 5;
-    static final int COL_WEATHER_CONDITION_ID = 6;
-    static final int COL_COORD_LAT = 7;
-    static final int COL_COORD_LONG = 8;
-
-    @Override
-    public void onConnected(Bundle bundle) {
-
-    }
-
-    @Override
-    public void onConnectionSuspended(int i) {
-
-    }
-
-    @Override
-    public void onConnectionFailed(ConnectionResult connectionResult) {
-
-    }
 
     /**
      * A callback interface that all activities containing this fragment must
@@ -150,13 +83,6 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         super.onCreate(savedInstanceState);
         // Add this line in order for this fragment to handle menu events.
         setHasOptionsMenu(true);
-
-        mGoogleApiClient = new GoogleApiClient.Builder(getActivity())
-                .addApi(Wearable.API)
-                .addConnectionCallbacks(this)
-                .addOnConnectionFailedListener(this)
-                .build();
-        mGoogleApiClient.connect();
     }
 
     @Override
@@ -315,11 +241,10 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         // intent can is detailed in the "Common Intents" page of Android's developer site:
         // http://developer.android.com/guide/components/intents-common.html#Maps
         if (null != mForecastAdapter) {
-            Cursor c = mForecastAdapter.getCursor();
-            if (null != c) {
-                c.moveToPosition(0);
-                String posLat = c.getString(COL_COORD_LAT);
-                String posLong = c.getString(COL_COORD_LONG);
+            ForecastRows rows = mForecastAdapter.getRows();
+            if (null != rows.coordLat) {
+                String posLat = rows.coordLat;
+                String posLong = rows.coordLong;
                 Uri geoLocation = Uri.parse("geo:" + posLat + "," + posLong);
 
                 Intent intent = new Intent(Intent.ACTION_VIEW);
@@ -344,34 +269,22 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
 
 
     @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
+    public Loader<ForecastRows> onCreateLoader(int i, Bundle bundle) {
         // This is called when a new Loader needs to be created.  This
         // fragment only uses one loader, so we don't care about checking the id.
-
-        // To only show current and future dates, filter the query to return weather only for
-        // dates after or including today.
-
-        // Sort order:  Ascending, by date.
-        String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
-
-        String locationSetting = Utility.getPreferredLocation(getActivity());
-        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
-                locationSetting, System.currentTimeMillis());
-
-        return new CursorLoader(getActivity(),
-                weatherForLocationUri,
-                FORECAST_COLUMNS,
-                null,
-                null,
-                sortOrder);
+        return new ForecastLoader(getActivity());
     }
 
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        mForecastAdapter.swapCursor(data);
+    public void onLoadFinished(Loader<ForecastRows> loader, ForecastRows data) {
+        if (data.isStale()) {
+            // The locale changed while the loader was kept for us
+            loader.onContentChanged();
+        }
+        mForecastAdapter.swapRows(data);
         updateEmptyView();
-        if ( data.getCount() == 0 ) {
+        if ( data.rows.isEmpty() ) {
             getActivity().supportStartPostponedEnterTransition();
         } else {
             mRecyclerView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
@@ -384,19 +297,9 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
                         int position = mForecastAdapter.getSelectedItemPosition();
                         if (position == RecyclerView.NO_POSITION &&
                                 -1 != mInitialSelectedDate) {
-                            Cursor data = mForecastAdapter.getCursor();
-                            int count = data.getCount();
-                            int dateColumn = data.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
-                            for ( int i = 0; i < count; i++ ) {
-                                data.moveToPosition(i);
-                                if ( data.getLong(dateColumn) == mInitialSelectedDate ) {
-                                    position = i;
-                                    break;
-                                }
-                            }
+                            position = mForecastAdapter.getRows().getPosition(mInitialSelectedDate);
                         }
                         if (position == RecyclerView.NO_POSITION) position = 0;
-                        Cursor data = mForecastAdapter.getCursor();
 
                         // If we don't need to restart the loader, and there's a desired position to restore
                         // to, do so now.
@@ -406,28 +309,6 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
                             mForecastAdapter.selectView(vh);
                         }
 
-                        // Curate current weather info to send to wearable
-                        position = 0;
-                        data.moveToPosition(position);
-//
-//                        int weatherColumnId     = data.getColumnIndex(FORECAST_COLUMNS[COL_WEATHER_CONDITION_ID]);
-//                        int weatherColTempHigh  = data.getColumnIndex(FORECAST_COLUMNS[COL_WEATHER_MAX_TEMP]);
-//                        int weatherColTempLow   = data.getColumnIndex(FORECAST_COLUMNS[COL_WEATHER_MIN_TEMP]);
-//                        int weatherShortText = data.getColumnIndex(FORECAST_COLUMNS[COL_WEATHER_DESC]);
-
-                        mWeatherId = data.getInt(COL_WEATHER_CONDITION_ID);
-                        mHighTemp  = data.getInt(COL_WEATHER_MAX_TEMP);
-                        mLowTemp   = data.getInt(COL_WEATHER_MIN_TEMP);
-
-                        mShortText = Utility.getStringForWeatherCondition(getActivity(),mWeatherId);
-
-                        vh = mRecyclerView.findViewHolderForAdapterPosition(position);
-                        if (null != vh) {
-                            ImageView currentImage = ((ForecastAdapter.ForecastAdapterViewHolder) vh).getSelectedImage();
-                            mWeatherImage = ((BitmapDrawable) currentImage.getDrawable()).getBitmap();
-                        }
-                        sendWeatherDataToWear();
-
                         if ( mHoldForTransition ) {
                             getActivity().supportStartPostponedEnterTransition();
                         }
@@ -449,8 +330,8 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-        mForecastAdapter.swapCursor(null);
+    public void onLoaderReset(Loader<ForecastRows> loader) {
+        mForecastAdapter.swapRows(null);
     }
 
     public void setUseTodayLayout(boolean useTodayLayout) {
@@ -496,35 +377,6 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     }
 
 
-    public void sendWeatherDataToWear(){
-        Log.e(getClass().getSimpleName(), "Sending weather Id to watch : " + mWeatherId);
-        PutDataMapRequest dataMapRequest = PutDataMapRequest.create("/weather-id");
-        Asset imageAsset = createAssetFromBitmap(mWeatherImage);
-        dataMapRequest.getDataMap().putAsset("weatherAsset",imageAsset);
-        dataMapRequest.getDataMap().putInt("weatherId", mWeatherId);
-        Log.v(getClass().getSimpleName(), "Max:" + String.valueOf(mHighTemp) + " min:"+String.valueOf(mLowTemp) + " Desc:"+mShortText);
-        dataMapRequest.getDataMap().putInt(getString(R.string.max_temp), mHighTemp);
-        dataMapRequest.getDataMap().putInt(getString(R.string.min_temp),mLowTemp);
-        dataMapRequest.getDataMap().putString(getString(R.string.short_desc),mShortText);
-        dataMapRequest.getDataMap().putLong("Time", System.currentTimeMillis());
-        PutDataRequest putDataRequest = dataMapRequest.asPutDataRequest();
-        Wearable.DataApi.putDataItem(mGoogleApiClient,putDataRequest)
-                .setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
-                    @Override
-                    public void onResult(DataApi.DataItemResult dataItemResult) {
-                        if(!dataItemResult.getStatus().isSuccess()){
-                            Log.e(getClass().getSimpleName(),"Sending data item failed");
-                        }
-                    }
-                });
-    }
-
-    public Asset createAssetFromBitmap(Bitmap bitmap){
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.PNG, 100,byteStream);
-        return Asset.createFromBytes(byteStream.toByteArray());
-    }
-
     @Override
     public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
         if (key.equals(getString(R.string.pref_location_status_key))) {
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.text.TextUtils;
+
+/**
+ * One day of the forecast list, with everything the list shows for it already worked out.
+ * Rows are made on the loader's thread, so binding one to a view is only a matter of setting
+ * what is here.  Never changes once made.
+ */
+final class ForecastRow {
+    final long id;
+    final long date;
+    final int weatherId;
+    // How the date reads at the top of the list ("Today, June 24") and elsewhere ("Today")
+    final String longDate;
+    final String shortDate;
+    final String description;
+    final String descriptionA11y;
+    final String high;
+    final String highA11y;
+    final String low;
+    final String lowA11y;
+    // for the top of the list and elsewhere
+    final int artResource;
+    final int iconResource;
+    // null if we are using the local graphics
+    final String artUrl;
+
+    /**
+     * Makes a row from the cursor's current row, which must have ForecastLoader's columns.
+     */
+    ForecastRow(Context context, FormattingCache formattingCache, boolean usingLocalGraphics,
+            Cursor cursor) {
+        id = cursor.getLong(ForecastLoader.COL_WEATHER_ID);
+        date = cursor.getLong(ForecastLoader.COL_WEATHER_DATE);
+        weatherId = cursor.getInt(ForecastLoader.COL_WEATHER_CONDITION_ID);
+        longDate = formattingCache.getFriendlyDayString(date, true);
+        shortDate = formattingCache.getFriendlyDayString(date, false);
+        description = Utility.getStringForWeatherCondition(context, weatherId);
+        descriptionA11y = context.getString(R.string.a11y_forecast, description);
+        high = formattingCache.formatTemperature(
+                cursor.getDouble(ForecastLoader.COL_WEATHER_MAX_TEMP));
+        highA11y = context.getString(R.string.a11y_high_temp, high);
+        low = formattingCache.formatTemperature(
+                cursor.getDouble(ForecastLoader.COL_WEATHER_MIN_TEMP));
+        lowA11y = context.getString(R.string.a11y_low_temp, low);
+        artResource = Utility.getArtResourceForWeatherCondition(weatherId);
+        iconResource = Utility.getIconResourceForWeatherCondition(weatherId);
+        artUrl = usingLocalGraphics ? null
+                : Utility.getArtUrlForWeatherCondition(context, weatherId);
+    }
+
+    /**
+     * @return true if the row would look the same as the other one on screen
+     */
+    boolean hasSameContents(ForecastRow other) {
+        // The rest all follows from these
+        return id == other.id
+                && date == other.date
+                && weatherId == other.weatherId
+                && longDate.equals(other.longDate)
+                && shortDate.equals(other.shortDate)
+                && high.equals(other.high)
+                && low.equals(other.low)
+                && TextUtils.equals(artUrl, other.artUrl);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The forecast list as loaded by {@link ForecastLoader}: a row for each day, by date, and where
+ * the forecast is for.  Comes with an index of the rows by date, so finding a day's position
+ * doesn't mean going through the list.  Never changes once made.
+ */
+final class ForecastRows {
+    static final ForecastRows EMPTY =
+            new ForecastRows(Collections.<ForecastRow>emptyList(), new long[0], null, null, null);
+
+    final List<ForecastRow> rows;
+    // The date of each row, by position.  Sorted, as the rows are.
+    private final long[] mDates;
+    // null if there are no rows
+    final String coordLat;
+    final String coordLong;
+    // the locale the rows were written in
+    final Locale locale;
+
+    private ForecastRows(List<ForecastRow> rows, long[] dates, String coordLat, String coordLong,
+            Locale locale) {
+        this.rows = rows;
+        mDates = dates;
+        this.coordLat = coordLat;
+        this.coordLong = coordLong;
+        this.locale = locale;
+    }
+
+    /**
+     * Reads every row of the cursor, which must have ForecastLoader's columns and be sorted by
+     * date.
+     */
+    static ForecastRows fromCursor(Context context, Cursor cursor) {
+        if (!cursor.moveToFirst()) {
+            return EMPTY;
+        }
+        String coordLat = cursor.getString(ForecastLoader.COL_COORD_LAT);
+        String coordLong = cursor.getString(ForecastLoader.COL_COORD_LONG);
+        Locale locale = Locale.getDefault();
+        FormattingCache formattingCache = FormattingCache.getInstance(context);
+        boolean usingLocalGraphics = Utility.usingLocalGraphics(context);
+        ArrayList<ForecastRow> rows = new ArrayList<ForecastRow>(cursor.getCount());
+        long[] dates = new long[cursor.getCount()];
+        do {
+            ForecastRow row = new ForecastRow(context, formattingCache, usingLocalGraphics, cursor);
+            dates[rows.size()] = row.date;
+            rows.add(row);
+        } while (cursor.moveToNext());
+        return new ForecastRows(Collections.unmodifiableList(rows), dates, coordLat, coordLong,
+                locale);
+    }
+
+    /**
+     * @return the position of the row for the date, or -1 if there is none
+     */
+    int getPosition(long date) {
+        int position = Arrays.binarySearch(mDates, date);
+        return position >= 0 ? position : -1;
+    }
+
+    /**
+     * @return true if the rows were written in a locale other than the current one
+     */
+    boolean isStale() {
+        return locale != null && !locale.equals(Locale.getDefault());
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.text.format.Time;
+import android.util.SparseArray;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Formats temperatures and forecast days the way {@link Utility} does, but remembers every
+ * string it makes.  A forecast list only ever shows a few dozen distinct ones, so once the list
+ * has been bound once, binding it again allocates nothing.
+ * <p>
+ * The units preference, the locale and the current day are read once and kept.  Everything is
+ * thrown away when any of them, or the time zone, changes: the preference and the time zone
+ * through listeners, the locale and the day when they are next used.
+ * <p>
+ * Safe to use from any thread.
+ */
+public class FormattingCache implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+    private static FormattingCache sInstance;
+
+    private final Context mContext;
+    private final String mUnitsKey;
+
+    // The snapshot, valid while mValid is set
+    private boolean mValid;
+    private boolean mMetric;
+    private Locale mLocale;
+    // Of the time zone as it was when the snapshot was taken
+    private long mGmtoff;
+    private int mTodayJulianDay;
+    // The first instant that is no longer today
+    private long mTodayEnd;
+    private String mTemperatureFormat;
+    private SimpleDateFormat mDayNameFormat;
+    private SimpleDateFormat mShortDateFormat;
+    private SimpleDateFormat mMonthDayFormat;
+
+    // By whole degrees, in the units of the snapshot
+    private final SparseArray<String> mTemperatures = new SparseArray<String>();
+    // By julian day, without the long form of today
+    private final SparseArray<String> mDays = new SparseArray<String>();
+    private String mLongToday;
+
+    public static synchronized FormattingCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new FormattingCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private FormattingCache(Context context) {
+        mContext = context;
+        mUnitsKey = context.getString(R.string.pref_units_key);
+        // The preferences only keep a weak reference to us, but we are never let go of.
+        PreferenceManager.getDefaultSharedPreferences(context)
+                .registerOnSharedPreferenceChangeListener(this);
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                invalidate();
+            }
+        }, new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED));
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (mUnitsKey.equals(key)) {
+            invalidate();
+        }
+    }
+
+    private synchronized void invalidate() {
+        mValid = false;
+    }
+
+    /**
+     * Takes a new snapshot if the one we have is out of date, dropping all the strings made
+     * from the old one.
+     */
+    private void validate() {
+        long now = System.currentTimeMillis();
+        // Locale.getDefault() hands back the same instance until the locale changes.
+        if (mValid && now < mTodayEnd && Locale.getDefault() == mLocale) {
+            return;
+        }
+        mMetric = Utility.isMetric(mContext);
+        mLocale = Locale.getDefault();
+        mGmtoff = TimeZone.getDefault().getOffset(now) / 1000;
+        mTodayJulianDay = Time.getJulianDay(now, mGmtoff);
+        Time time = new Time();
+        time.setJulianDay(mTodayJulianDay + 1);
+        mTodayEnd = time.toMillis(true);
+        mTemperatureFormat = mContext.getString(R.string.format_temperature);
+        mDayNameFormat = new SimpleDateFormat("EEEE");
+        mShortDateFormat = new SimpleDateFormat("EEE MMM dd");
+        mMonthDayFormat = new SimpleDateFormat("MMMM dd");
+        mTemperatures.clear();
+        mDays.clear();
+        mLongToday = null;
+        mValid = true;
+    }
+
+    /**
+     * @see Utility#formatTemperature(Context, double)
+     */
+    public synchronized String formatTemperature(double temperature) {
+        validate();
+        // Data stored in Celsius by default.  If user prefers to see in Fahrenheit, convert
+        // the values here.
+        if (!mMetric) {
+            temperature = (temperature * 1.8) + 32;
+        }
+        // For presentation, assume the user doesn't care about tenths of a degree.  Round half
+        // away from zero, like the format does.
+        int degrees = (int) Math.round(Math.abs(temperature));
+        if (temperature < 0) {
+            degrees = -degrees;
+        }
+        String formatted = mTemperatures.get(degrees);
+        if (formatted == null) {
+            // Formatting the whole degrees also keeps us from ever showing "-0".
+            formatted = String.format(mTemperatureFormat, (double) degrees);
+            mTemperatures.put(degrees, formatted);
+        }
+        return formatted;
+    }
+
+    /**
+     * @see Utility#getFriendlyDayString(Context, long, boolean)
+     */
+    public synchronized String getFriendlyDayString(long dateInMillis, boolean displayLongToday) {
+        validate();
+        int julianDay = Time.getJulianDay(dateInMillis, mGmtoff);
+
+        if (displayLongToday && julianDay == mTodayJulianDay) {
+            // "Today, June 24"
+            if (mLongToday == null) {
+                mLongToday = mContext.getString(R.string.format_full_friendly_date,
+                        mContext.getString(R.string.today), mMonthDayFormat.format(dateInMillis));
+            }
+            return mLongToday;
+        }
+
+        String day = mDays.get(julianDay);
+        if (day == null) {
+            if (julianDay == mTodayJulianDay) {
+                day = mContext.getString(R.string.today);
+            } else if (julianDay == mTodayJulianDay + 1) {
+                day = mContext.getString(R.string.tomorrow);
+            } else if (julianDay < mTodayJulianDay + 7) {
+                // Less than a week in the future, just the day name: "Wednesday"
+                day = mDayNameFormat.format(dateInMillis);
+            } else {
+                // Otherwise, use the form "Mon Jun 3"
+                day = mShortDateFormat.format(dateInMillis);
+            }
+            mDays.put(julianDay, day);
+        }
+        return day;
+    }
+}
@@ -15,90 +15,134 @@
  */
 package com.example.android.sunshine.app;
 
-import android.os.Build;
 import android.os.Bundle;
-import android.os.Parcel;
-import android.os.Parcelable;
 import android.support.v4.util.LongSparseArray;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
-import android.util.SparseBooleanArray;
 import android.widget.AbsListView;
 import android.widget.Checkable;
 
 /**
- * The ItemChoiceManager class keeps track of which positions have been selected.  Note that it
- * doesn't take advantage of new adapter features to track changes in the underlying data.
+ * The ItemChoiceManager class keeps track of which items have been selected.  Items are known by
+ * their stable ids, so a selection stays with its item however the data changes around it, and
+ * whether an item is selected is looked up by id among the few that are.  The adapter must
+ * have stable ids.
+ * <p>
+ * The position of each selected item is followed through the adapter's change notifications,
+ * so the list never has to be searched for it unless the whole data set is changed at once.
  */
 public class ItemChoiceManager {
-    private final String LOG_TAG = MainActivity.class.getSimpleName();
-    private final String SELECTED_ITEMS_KEY = "SIK";
+    private final String LOG_TAG = ItemChoiceManager.class.getSimpleName();
+    private final String SELECTED_IDS_KEY = "SIK_ids";
     private int mChoiceMode;
 
-    private RecyclerView.Adapter mAdapter;
-    private RecyclerView.AdapterDataObserver mAdapterDataObserver = new RecyclerView.AdapterDataObserver() {
+    private final RecyclerView.Adapter mAdapter;
+
+    /**
+     * Running state of which IDs are currently checked.
+     * If there is a value for a given key, the checked state for that ID is true
+     * and the value holds the position in the adapter for that id, or
+     * RecyclerView.NO_POSITION if it isn't in the adapter as far as we know.
+     */
+    private final LongSparseArray<Integer> mCheckedIdStates = new LongSparseArray<Integer>();
+
+    private final RecyclerView.AdapterDataObserver mAdapterDataObserver = new RecyclerView.AdapterDataObserver() {
         @Override
         public void onChanged() {
-            super.onChanged();
-            if (mAdapter != null && mAdapter.hasStableIds())
-                confirmCheckedPositionsById(mAdapter.getItemCount());
+            for (int checkedIndex = 0; checkedIndex < mCheckedIdStates.size(); checkedIndex++) {
+                mCheckedIdStates.setValueAt(checkedIndex,
+                        findPosition(mCheckedIdStates.keyAt(checkedIndex),
+                                mCheckedIdStates.valueAt(checkedIndex)));
+            }
         }
-    };
 
-    private ItemChoiceManager() {
-    }
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            for (int checkedIndex = 0; checkedIndex < mCheckedIdStates.size(); checkedIndex++) {
+                int position = mCheckedIdStates.valueAt(checkedIndex);
+                if (position == RecyclerView.NO_POSITION) {
+                    // Perhaps it has come back
+                    long id = mCheckedIdStates.keyAt(checkedIndex);
+                    for (int i = positionStart; i < positionStart + itemCount; i++) {
+                        if (mAdapter.getItemId(i) == id) {
+                            mCheckedIdStates.setValueAt(checkedIndex, i);
+                            break;
+                        }
+                    }
+                } else if (position >= positionStart) {
+                    mCheckedIdStates.setValueAt(checkedIndex, position + itemCount);
+                }
+            }
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            for (int checkedIndex = 0; checkedIndex < mCheckedIdStates.size(); checkedIndex++) {
+                int position = mCheckedIdStates.valueAt(checkedIndex);
+                if (position >= positionStart + itemCount) {
+                    mCheckedIdStates.setValueAt(checkedIndex, position - itemCount);
+                } else if (position >= positionStart) {
+                    // Stays selected, should it come back
+                    mCheckedIdStates.setValueAt(checkedIndex, RecyclerView.NO_POSITION);
+                }
+            }
+        }
 
-    ;
+        @Override
+        public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+            // RecyclerView only moves one item at a time.
+            for (int checkedIndex = 0; checkedIndex < mCheckedIdStates.size(); checkedIndex++) {
+                int position = mCheckedIdStates.valueAt(checkedIndex);
+                if (position == RecyclerView.NO_POSITION) {
+                    continue;
+                }
+                if (position == fromPosition) {
+                    position = toPosition;
+                } else if (fromPosition < position && position <= toPosition) {
+                    position--;
+                } else if (toPosition <= position && position < fromPosition) {
+                    position++;
+                }
+                mCheckedIdStates.setValueAt(checkedIndex, position);
+            }
+        }
+    };
 
     public ItemChoiceManager(RecyclerView.Adapter adapter) {
+        if (!adapter.hasStableIds()) {
+            throw new IllegalArgumentException("ItemChoiceManager needs an adapter with stable ids.");
+        }
         mAdapter = adapter;
+        mAdapter.registerAdapterDataObserver(mAdapterDataObserver);
     }
 
-    /**
-     * How many positions in either direction we will search to try to
-     * find a checked item with a stable ID that moved position across
-     * a data set change. If the item isn't found it will be unselected.
-     */
-    private static final int CHECK_POSITION_SEARCH_DISTANCE = 20;
-
-    /**
-     * Running state of which positions are currently checked
-     */
-    SparseBooleanArray mCheckStates = new SparseBooleanArray();
-
-    /**
-     * Running state of which IDs are currently checked.
-     * If there is a value for a given key, the checked state for that ID is true
-     * and the value holds the last known position in the adapter for that id.
-     */
-    LongSparseArray<Integer> mCheckedIdStates = new LongSparseArray<Integer>();
-
     public void onClick(RecyclerView.ViewHolder vh) {
         if (mChoiceMode == AbsListView.CHOICE_MODE_NONE)
             return;
 
-        int checkedItemCount = mCheckStates.size();
         int position = vh.getAdapterPosition();
 
         if (position == RecyclerView.NO_POSITION) {
             Log.d(LOG_TAG, "Unable to Set Item State");
             return;
         }
+        long id = mAdapter.getItemId(position);
 
         switch (mChoiceMode) {
             case AbsListView.CHOICE_MODE_NONE:
                 break;
             case AbsListView.CHOICE_MODE_SINGLE: {
-                boolean checked = mCheckStates.get(position, false);
+                boolean checked = mCheckedIdStates.get(id) != null;
                 if (!checked) {
-                    for (int i = 0; i < checkedItemCount; i++) {
-                        mAdapter.notifyItemChanged(mCheckStates.keyAt(i));
+                    for (int i = 0; i < mCheckedIdStates.size(); i++) {
+                        int checkedPosition = mCheckedIdStates.valueAt(i);
+                        if (checkedPosition != RecyclerView.NO_POSITION) {
+                            mAdapter.notifyItemChanged(checkedPosition);
+                        }
                     }
-                    mCheckStates.clear();
-                    mCheckStates.put(position, true);
                     mCheckedIdStates.clear();
-                    mCheckedIdStates.put(mAdapter.getItemId(position), position);
+                    mCheckedIdStates.put(id, position);
                 }
                 // We directly call onBindViewHolder here because notifying that an item has
                 // changed on an item that has the focus causes it to lose focus, which makes
@@ -107,8 +151,12 @@ public class ItemChoiceManager {
                 break;
             }
             case AbsListView.CHOICE_MODE_MULTIPLE: {
-                boolean checked = mCheckStates.get(position, false);
-                mCheckStates.put(position, !checked);
+                boolean checked = mCheckedIdStates.get(id) != null;
+                if (checked) {
+                    mCheckedIdStates.delete(id);
+                } else {
+                    mCheckedIdStates.put(id, position);
+                }
                 // We directly call onBindViewHolder here because notifying that an item has
                 // changed on an item that has the focus causes it to lose focus, which makes
                 // keyboard navigation a bit annoying
@@ -137,59 +185,42 @@ public class ItemChoiceManager {
     }
 
     /**
-     * Returns the checked state of the specified position. The result is only
+     * Returns the checked state of the item with the specified id. The result is only
      * valid if the choice mode has been set to AbsListView.CHOICE_MODE_SINGLE,
      * but the code does not check this.
      *
-     * @param position The item whose checked state to return
+     * @param id The stable id of the item whose checked state to return
      * @return The item's checked state
      * @see #setChoiceMode(int)
      */
-    public boolean isItemChecked(int position) {
-        return mCheckStates.get(position);
+    public boolean isItemChecked(long id) {
+        return mCheckedIdStates.get(id) != null;
     }
 
     void clearSelections() {
-        mCheckStates.clear();
         mCheckedIdStates.clear();
     }
 
-    void confirmCheckedPositionsById(int oldItemCount) {
-        // Clear out the positional check states, we'll rebuild it below from IDs.
-        mCheckStates.clear();
-
-        for (int checkedIndex = 0; checkedIndex < mCheckedIdStates.size(); checkedIndex++) {
-            final long id = mCheckedIdStates.keyAt(checkedIndex);
-            final int lastPos = mCheckedIdStates.valueAt(checkedIndex);
-
-            final long lastPosId = mAdapter.getItemId(lastPos);
-            if (id != lastPosId) {
-                // Look around to see if the ID is nearby. If not, uncheck it.
-                final int start = Math.max(0, lastPos - CHECK_POSITION_SEARCH_DISTANCE);
-                final int end = Math.min(lastPos + CHECK_POSITION_SEARCH_DISTANCE, oldItemCount);
-                boolean found = false;
-                for (int searchPos = start; searchPos < end; searchPos++) {
-                    final long searchId = mAdapter.getItemId(searchPos);
-                    if (id == searchId) {
-                        found = true;
-                        mCheckStates.put(searchPos, true);
-                        mCheckedIdStates.setValueAt(checkedIndex, searchPos);
-                        break;
-                    }
-                }
-
-                if (!found) {
-                    mCheckedIdStates.delete(id);
-                    checkedIndex--;
-                }
-            } else {
-                mCheckStates.put(lastPos, true);
+    /**
+     * @return the position of the item with the id, looking first where it last was, or
+     * RecyclerView.NO_POSITION if it isn't there any more
+     */
+    private int findPosition(long id, int lastPosition) {
+        int itemCount = mAdapter.getItemCount();
+        if (lastPosition != RecyclerView.NO_POSITION && lastPosition < itemCount
+                && mAdapter.getItemId(lastPosition) == id) {
+            return lastPosition;
+        }
+        for (int position = 0; position < itemCount; position++) {
+            if (mAdapter.getItemId(position) == id) {
+                return position;
             }
         }
+        return RecyclerView.NO_POSITION;
     }
 
     public void onBindViewHolder(RecyclerView.ViewHolder vh, int position) {
-        boolean checked = isItemChecked(position);
+        boolean checked = isItemChecked(mAdapter.getItemId(position));
         if (vh.itemView instanceof Checkable) {
             ((Checkable) vh.itemView).setChecked(checked);
         }
@@ -197,41 +228,36 @@ public class ItemChoiceManager {
     }
 
     public void onRestoreInstanceState(Bundle savedInstanceState) {
-        byte[] states = savedInstanceState.getByteArray(SELECTED_ITEMS_KEY);
-        if ( null != states ) {
-            Parcel inParcel = Parcel.obtain();
-            inParcel.unmarshall(states, 0, states.length);
-            inParcel.setDataPosition(0);
-            mCheckStates = inParcel.readSparseBooleanArray();
-            final int numStates = inParcel.readInt();
+        long[] ids = savedInstanceState.getLongArray(SELECTED_IDS_KEY);
+        if ( null != ids ) {
             mCheckedIdStates.clear();
-            for (int i=0; i<numStates; i++) {
-                final long key = inParcel.readLong();
-                final int value = inParcel.readInt();
-                mCheckedIdStates.put(key, value);
+            for (long id : ids) {
+                mCheckedIdStates.put(id, findPosition(id, RecyclerView.NO_POSITION));
             }
         }
     }
 
     public void onSaveInstanceState(Bundle outState) {
-        Parcel outParcel = Parcel.obtain();
-        outParcel.writeSparseBooleanArray(mCheckStates);
+        // Positions are found again from the ids
         final int numStates = mCheckedIdStates.size();
-        outParcel.writeInt(numStates);
+        long[] ids = new long[numStates];
         for (int i=0; i<numStates; i++) {
-            outParcel.writeLong(mCheckedIdStates.keyAt(i));
-            outParcel.writeInt(mCheckedIdStates.valueAt(i));
+            ids[i] = mCheckedIdStates.keyAt(i);
         }
-        byte[] states = outParcel.marshall();
-        outState.putByteArray(SELECTED_ITEMS_KEY, states);
-        outParcel.recycle();
+        outState.putLongArray(SELECTED_IDS_KEY, ids);
     }
 
+    /**
+     * @return the position of a selected item, or RecyclerView.NO_POSITION if none of them are
+     * in the adapter
+     */
     public int getSelectedItemPosition() {
-        if ( mCheckStates.size() == 0 ) {
-            return RecyclerView.NO_POSITION;
-        } else {
-            return mCheckStates.keyAt(0);
+        for (int i = 0; i < mCheckedIdStates.size(); i++) {
+            int position = mCheckedIdStates.valueAt(i);
+            if (position != RecyclerView.NO_POSITION) {
+                return position;
+            }
         }
+        return RecyclerView.NO_POSITION;
     }
 }
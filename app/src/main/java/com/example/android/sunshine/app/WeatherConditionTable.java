@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Everything we show for an OpenWeatherMap weather condition id, looked up by indexing arrays
+ * that cover every id from 200 to 962.  This is behind the Utility ...ForWeatherCondition
+ * methods, which run for every list row, widget row, notification and Muzei update.  None of
+ * the lookups allocate.
+ * <p>
+ * Based on weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ */
+final class WeatherConditionTable {
+
+    private static final int MIN_ID = 200;
+    private static final int MAX_ID = 962;
+
+    // The kinds of weather we have pictures for.  These index the arrays below.
+    private static final byte NONE = -1;
+    private static final byte STORM = 0;
+    private static final byte LIGHT_RAIN = 1;
+    private static final byte RAIN = 2;
+    private static final byte SNOW = 3;
+    private static final byte FOG = 4;
+    private static final byte CLEAR = 5;
+    private static final byte LIGHT_CLOUDS = 6;
+    private static final byte CLOUDS = 7;
+
+    private static final int[] ICON_RESOURCES = {
+            R.drawable.ic_storm,
+            R.drawable.ic_light_rain,
+            R.drawable.ic_rain,
+            R.drawable.ic_snow,
+            R.drawable.ic_fog,
+            R.drawable.ic_clear,
+            R.drawable.ic_light_clouds,
+            R.drawable.ic_cloudy
+    };
+
+    private static final int[] ART_RESOURCES = {
+            R.drawable.art_storm,
+            R.drawable.art_light_rain,
+            R.drawable.art_rain,
+            R.drawable.art_snow,
+            R.drawable.art_fog,
+            R.drawable.art_clear,
+            R.drawable.art_light_clouds,
+            R.drawable.art_clouds
+    };
+
+    // What goes into an art pack's URL format
+    private static final String[] ART_NAMES = {
+            "storm",
+            "light_rain",
+            "rain",
+            "snow",
+            "fog",
+            "clear",
+            "light_clouds",
+            "clouds"
+    };
+
+    private static final String[] IMAGE_URLS = {
+            "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg"
+    };
+
+    // 781 (tornado) is drawn as a storm, but has a photo of its own
+    private static final String IMAGE_URL_781 =
+            "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg";
+
+    // by weather id - MIN_ID
+    private static final byte[] sKinds = new byte[MAX_ID - MIN_ID + 1];
+    private static final int[] sStringResources = new int[MAX_ID - MIN_ID + 1];
+
+    static {
+        Arrays.fill(sKinds, NONE);
+        setKind(200, 232, STORM);
+        setKind(300, 321, LIGHT_RAIN);
+        setKind(500, 504, RAIN);
+        setKind(511, 511, SNOW);
+        setKind(520, 531, RAIN);
+        setKind(600, 622, SNOW);
+        // 761 (dust) has always been drawn as fog, and 781 (tornado) as a storm.
+        setKind(701, 761, FOG);
+        setKind(781, 781, STORM);
+        setKind(800, 800, CLEAR);
+        setKind(801, 801, LIGHT_CLOUDS);
+        setKind(802, 804, CLOUDS);
+
+        for (int id = 200; id <= 232; id++) {
+            setString(id, R.string.condition_2xx);
+        }
+        for (int id = 300; id <= 321; id++) {
+            setString(id, R.string.condition_3xx);
+        }
+        setString(500, R.string.condition_500);
+        setString(501, R.string.condition_501);
+        setString(502, R.string.condition_502);
+        setString(503, R.string.condition_503);
+        setString(504, R.string.condition_504);
+        setString(511, R.string.condition_511);
+        setString(520, R.string.condition_520);
+        setString(531, R.string.condition_531);
+        setString(600, R.string.condition_600);
+        setString(601, R.string.condition_601);
+        setString(602, R.string.condition_602);
+        setString(611, R.string.condition_611);
+        setString(612, R.string.condition_612);
+        setString(615, R.string.condition_615);
+        setString(616, R.string.condition_616);
+        setString(620, R.string.condition_620);
+        setString(621, R.string.condition_621);
+        setString(622, R.string.condition_622);
+        setString(701, R.string.condition_701);
+        setString(711, R.string.condition_711);
+        setString(721, R.string.condition_721);
+        setString(731, R.string.condition_731);
+        setString(741, R.string.condition_741);
+        setString(751, R.string.condition_751);
+        setString(761, R.string.condition_761);
+        setString(762, R.string.condition_762);
+        setString(771, R.string.condition_771);
+        setString(781, R.string.condition_781);
+        setString(800, R.string.condition_800);
+        setString(801, R.string.condition_801);
+        setString(802, R.string.condition_802);
+        setString(803, R.string.condition_803);
+        setString(804, R.string.condition_804);
+        setString(900, R.string.condition_900);
+        setString(901, R.string.condition_901);
+        setString(902, R.string.condition_902);
+        setString(903, R.string.condition_903);
+        setString(904, R.string.condition_904);
+        setString(905, R.string.condition_905);
+        setString(906, R.string.condition_906);
+        setString(951, R.string.condition_951);
+        setString(952, R.string.condition_952);
+        setString(953, R.string.condition_953);
+        setString(954, R.string.condition_954);
+        setString(955, R.string.condition_955);
+        setString(956, R.string.condition_956);
+        setString(957, R.string.condition_957);
+        setString(958, R.string.condition_958);
+        setString(959, R.string.condition_959);
+        setString(960, R.string.condition_960);
+        setString(961, R.string.condition_961);
+        setString(962, R.string.condition_962);
+    }
+
+    private static void setKind(int fromId, int toId, byte kind) {
+        Arrays.fill(sKinds, fromId - MIN_ID, toId - MIN_ID + 1, kind);
+    }
+
+    private static void setString(int id, int stringResource) {
+        sStringResources[id - MIN_ID] = stringResource;
+    }
+
+    /**
+     * The art URLs of one art pack, by kind.  Replaced as a whole when the pack changes.
+     */
+    private static final class ArtUrls {
+        final String format;
+        final String[] urls = new String[ART_NAMES.length];
+
+        ArtUrls(String format) {
+            this.format = format;
+            for (int kind = 0; kind < ART_NAMES.length; kind++) {
+                urls[kind] = String.format(Locale.US, format, ART_NAMES[kind]);
+            }
+        }
+    }
+
+    private static volatile ArtUrls sArtUrls;
+
+    private WeatherConditionTable() {
+    }
+
+    private static byte getKind(int weatherId) {
+        if (weatherId < MIN_ID || weatherId > MAX_ID) {
+            return NONE;
+        }
+        return sKinds[weatherId - MIN_ID];
+    }
+
+    /**
+     * @return the icon resource id for the condition, or -1 if we have none
+     */
+    static int getIconResource(int weatherId) {
+        byte kind = getKind(weatherId);
+        return kind != NONE ? ICON_RESOURCES[kind] : -1;
+    }
+
+    /**
+     * @return the art resource id for the condition, or -1 if we have none
+     */
+    static int getArtResource(int weatherId) {
+        byte kind = getKind(weatherId);
+        return kind != NONE ? ART_RESOURCES[kind] : -1;
+    }
+
+    /**
+     * @return the string resource id describing the condition, or 0 if we have none
+     */
+    static int getStringResource(int weatherId) {
+        if (weatherId < MIN_ID || weatherId > MAX_ID) {
+            return 0;
+        }
+        return sStringResources[weatherId - MIN_ID];
+    }
+
+    /**
+     * @return the URL of a photo of the condition, or null if we have none
+     */
+    static String getImageUrl(int weatherId) {
+        if (weatherId == 781) {
+            return IMAGE_URL_781;
+        }
+        byte kind = getKind(weatherId);
+        return kind != NONE ? IMAGE_URLS[kind] : null;
+    }
+
+    /**
+     * @param artPackFormat the art pack's URL format, which takes the name of the art
+     * @return the art pack's URL for the condition, or null if we have none
+     */
+    static String getArtUrl(String artPackFormat, int weatherId) {
+        byte kind = getKind(weatherId);
+        if (kind == NONE) {
+            return null;
+        }
+        ArtUrls artUrls = sArtUrls;
+        if (artUrls == null || !artUrls.format.equals(artPackFormat)) {
+            // Only when the art pack changes
+            artUrls = new ArtUrls(artPackFormat);
+            sArtUrls = artUrls;
+        }
+        return artUrls.urls[kind];
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * One step of a WeatherDbHelper schema upgrade, taking the database from {@link #startVersion}
+ * to the version right after it without losing the cached weather.
+ *
+ * A migration describes the schema as it was at the time it was written.  Once released it must
+ * never change, even if a later version changes the same tables again.
+ */
+abstract class Migration {
+
+    final int startVersion;
+
+    Migration(int startVersion) {
+        this.startVersion = startVersion;
+    }
+
+    /**
+     * Runs inside the upgrade transaction that SQLiteOpenHelper opens for onUpgrade.
+     */
+    abstract void migrate(SQLiteDatabase db);
+}
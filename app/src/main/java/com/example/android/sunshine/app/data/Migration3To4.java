@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Version 4 adds the hourly forecast table, and the index pruning it by time.
+ */
+class Migration3To4 extends Migration {
+
+    Migration3To4() {
+        super(3);
+    }
+
+    @Override
+    void migrate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE hourly (_id INTEGER PRIMARY KEY,location_id INTEGER NOT NULL, " +
+                "time INTEGER NOT NULL, short_desc TEXT NOT NULL, weather_id INTEGER NOT NULL," +
+                "temp REAL NOT NULL, humidity REAL NOT NULL, pressure REAL NOT NULL, " +
+                "wind REAL NOT NULL, degrees REAL NOT NULL, " +
+                " FOREIGN KEY (location_id) REFERENCES location (_id), " +
+                " UNIQUE (location_id, time) ON CONFLICT REPLACE);");
+        db.execSQL("CREATE INDEX IF NOT EXISTS hourly_time_idx ON hourly (time);");
+    }
+}
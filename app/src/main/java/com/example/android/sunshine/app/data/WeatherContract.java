@@ -19,7 +19,8 @@ import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
-import android.text.format.Time;
+
+import java.util.TimeZone;
 
 /**
  * Defines table and column names for the weather database.
@@ -43,15 +44,115 @@ public class WeatherContract {
     // At least, let's hope not.  Don't be that dev, reader.  Don't be that dev.
     public static final String PATH_WEATHER = "weather";
     public static final String PATH_LOCATION = "location";
+    public static final String PATH_HOURLY = "hourly";
+
+    // ContentResolver.call() method that compacts the database.  The result holds the number of
+    // bytes reclaimed as a long under KEY_RECLAIMED_BYTES.
+    public static final String METHOD_COMPACT = "compact";
+    public static final String KEY_RECLAIMED_BYTES = "reclaimed_bytes";
 
     // To make it easy to query for the exact date, we normalize all dates that go into
-    // the database to the start of the the Julian day at UTC.
+    // the database to the start of the day, in the time zone of the device.
+    //
+    // This runs for every row we write and every dated Uri we build, so it is plain arithmetic
+    // on the zone's offset rather than a new Time each call.  The offset is cached along with
+    // the stretch of time it applies to, up to the daylight saving time changes on either side,
+    // so any date in those months is answered without looking at the zone or allocating.
     public static long normalizeDate(long startDate) {
-        // normalize the start date to the beginning of the (UTC) day
-        Time time = new Time();
-        time.set(startDate);
-        int julianDay = Time.getJulianDay(startDate, time.gmtoff);
-        return time.setJulianDay(julianDay);
+        OffsetWindow window = sOffsetWindow;
+        if (window == null || startDate < window.from || startDate >= window.until) {
+            window = new OffsetWindow(window != null ? window.zone : TimeZone.getDefault(),
+                    startDate);
+            sOffsetWindow = window;
+        }
+        long localDay = floorDiv(startDate + window.offset, DAY_IN_MILLIS);
+        long start = localDay * DAY_IN_MILLIS - window.offset;
+        if (start < window.from) {
+            // The offset changed earlier on this day, so the day began under another one.
+            start = startOfLocalDay(window.zone, localDay, startDate);
+        }
+        return start;
+    }
+
+    /**
+     * Drops the cached time zone and offset, so that dates are normalized in the device's time
+     * zone as it is now.  Call when the time zone changes.
+     */
+    public static void onTimeZoneChanged() {
+        sOffsetWindow = null;
+    }
+
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    // package-private so that tests can see whether it was replaced
+    static volatile OffsetWindow sOffsetWindow;
+
+    /**
+     * A time zone's offset from UTC, and the instants between which it applies.
+     */
+    static final class OffsetWindow {
+        // How far either way we look for a change of offset.  Zones with daylight saving time
+        // change at least twice a year; the window of any other ends here.
+        private static final int MAX_SEARCH_DAYS = 366;
+
+        final TimeZone zone;
+        final int offset;
+        // the first instant with this offset
+        final long from;
+        // the first instant after it with another offset, or the end of the search
+        final long until;
+
+        OffsetWindow(TimeZone zone, long date) {
+            this.zone = zone;
+            offset = zone.getOffset(date);
+            from = findChange(zone, offset, date, -DAY_IN_MILLIS);
+            until = findChange(zone, offset, date, DAY_IN_MILLIS);
+        }
+
+        /**
+         * Walks from the date a day at a time, in the direction of step, until the offset is
+         * another one, then narrows the change down to the millisecond.
+         *
+         * @return going forward, the first instant with another offset; going back, the first
+         * instant with this one.  The last instant looked at if the offset never changed.
+         */
+        private static long findChange(TimeZone zone, int offset, long date, long step) {
+            long inside = date;
+            for (int i = 0; i < MAX_SEARCH_DAYS; i++) {
+                long outside = inside + step;
+                if (zone.getOffset(outside) != offset) {
+                    while (Math.abs(outside - inside) > 1) {
+                        long middle = inside + (outside - inside) / 2;
+                        if (zone.getOffset(middle) == offset) {
+                            inside = middle;
+                        } else {
+                            outside = middle;
+                        }
+                    }
+                    return step > 0 ? outside : inside;
+                }
+                inside = outside;
+            }
+            return inside;
+        }
+    }
+
+    /**
+     * @param nearby an instant within a day or so of the wanted midnight, used to guess the
+     *               offset in effect at midnight
+     */
+    private static long startOfLocalDay(TimeZone zone, long localDay, long nearby) {
+        long localMidnight = localDay * DAY_IN_MILLIS;
+        // Take the offset at the guessed instant, then settle on the offset in effect at
+        // that midnight.  Where midnight itself is skipped by a DST change, this lands on
+        // the first instant of the day that does exist.
+        long guess = localMidnight - zone.getOffset(nearby);
+        return localMidnight - zone.getOffset(guess);
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && ((x ^ y) < 0)) ? q - 1 : q;
     }
 
     /* Inner class that defines the table contents of the location table */
@@ -165,4 +266,79 @@ public class WeatherContract {
                 return 0;
         }
     }
+
+    /* Inner class that defines the table contents of the hourly table */
+    public static final class HourlyEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_HOURLY).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_HOURLY;
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_HOURLY;
+
+        public static final String TABLE_NAME = "hourly";
+
+        // Column with the foreign key into the location table.
+        public static final String COLUMN_LOC_KEY = "location_id";
+        // Start of the hour the forecast is for, stored as long in milliseconds since the epoch.
+        // OWM forecasts in three hour steps, so this is every third hour.
+        public static final String COLUMN_TIME = "time";
+        // Weather id as returned by API, to identify the icon to be used
+        public static final String COLUMN_WEATHER_ID = "weather_id";
+
+        // Short description of the weather, as provided by API.  e.g "Clear"
+        public static final String COLUMN_SHORT_DESC = "short_desc";
+
+        // Temperature at that time (stored as a float)
+        public static final String COLUMN_TEMP = "temp";
+
+        // Humidity is stored as a float representing percentage
+        public static final String COLUMN_HUMIDITY = "humidity";
+
+        // Pressure is stored as a float, in hPa
+        public static final String COLUMN_PRESSURE = "pressure";
+
+        // Windspeed is stored as a float representing windspeed  mph
+        public static final String COLUMN_WIND_SPEED = "wind";
+
+        // Degrees are meteorological degrees (e.g, 0 is north, 180 is south).  Stored as floats.
+        public static final String COLUMN_DEGREES = "degrees";
+
+        private static final long HOUR_IN_MILLIS = 1000 * 60 * 60;
+
+        // Times are bucketed to the start of their hour, in UTC, so that a forecast for the same
+        // hour always lands on the same row however the server rounds it.
+        public static long normalizeTime(long time) {
+            return time - time % HOUR_IN_MILLIS;
+        }
+
+        public static Uri buildHourlyUri(long id) {
+            return ContentUris.withAppendedId(CONTENT_URI, id);
+        }
+
+        public static Uri buildHourlyLocation(String locationSetting) {
+            return CONTENT_URI.buildUpon().appendPath(locationSetting).build();
+        }
+
+        public static Uri buildHourlyLocationWithStartTime(
+                String locationSetting, long startTime) {
+            return CONTENT_URI.buildUpon().appendPath(locationSetting)
+                    .appendQueryParameter(COLUMN_TIME, Long.toString(normalizeTime(startTime)))
+                    .build();
+        }
+
+        public static String getLocationSettingFromUri(Uri uri) {
+            return uri.getPathSegments().get(1);
+        }
+
+        public static long getStartTimeFromUri(Uri uri) {
+            String timeString = uri.getQueryParameter(COLUMN_TIME);
+            if (null != timeString && timeString.length() > 0)
+                return Long.parseLong(timeString);
+            else
+                return 0;
+        }
+    }
 }
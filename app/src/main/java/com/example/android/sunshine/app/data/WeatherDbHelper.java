@@ -16,9 +16,12 @@
 package com.example.android.sunshine.app.data;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
+import com.example.android.sunshine.app.data.WeatherContract.HourlyEntry;
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
@@ -27,13 +30,161 @@ import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
  */
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
-    // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 2;
+    // If you change the database schema, you must increment the database version, and add a
+    // Migration from the previous version to MIGRATIONS.
+    static final int DATABASE_VERSION = 4;
+
+    // One per version step, in order.  Versions before 2 are only ever rebuilt from scratch.
+    static final Migration[] MIGRATIONS = {
+            new Migration2To3(),
+            new Migration3To4(),
+    };
 
     static final String DATABASE_NAME = "weather.db";
 
+    // Serves the forecast queries of WeatherProvider: the join finds the location through the
+    // unique location_setting index, and then needs the location's days from a start date on.
+    // The UNIQUE (date, location_id) index has the columns the wrong way round for that.  The
+    // trailing columns make it a covering index for the forecast list and the widgets, which
+    // then never have to touch the table itself.
+    static final String INDEX_WEATHER_FORECAST = "weather_forecast_idx";
+
+    private static final String SQL_CREATE_WEATHER_FORECAST_INDEX =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_WEATHER_FORECAST + " ON " +
+                    WeatherEntry.TABLE_NAME + " (" +
+                    WeatherEntry.COLUMN_LOC_KEY + ", " +
+                    WeatherEntry.COLUMN_DATE + ", " +
+                    WeatherEntry.COLUMN_WEATHER_ID + ", " +
+                    WeatherEntry.COLUMN_MAX_TEMP + ", " +
+                    WeatherEntry.COLUMN_MIN_TEMP + ", " +
+                    WeatherEntry.COLUMN_SHORT_DESC + ");";
+
+    // Lets pruning find the expired hours of every location without scanning the hourly table.
+    // Queries by location and time are served by the UNIQUE (location_id, time) index.
+    static final String INDEX_HOURLY_TIME = "hourly_time_idx";
+
+    private static final String SQL_CREATE_HOURLY_TABLE =
+            "CREATE TABLE " + HourlyEntry.TABLE_NAME + " (" +
+                    // Not AUTOINCREMENT: there are several times as many hourly rows as daily
+                    // ones, they are replaced on every sync, and nothing needs their ids to keep
+                    // increasing.  This spares a write to sqlite_sequence per row.
+                    HourlyEntry._ID + " INTEGER PRIMARY KEY," +
+                    HourlyEntry.COLUMN_LOC_KEY + " INTEGER NOT NULL, " +
+                    HourlyEntry.COLUMN_TIME + " INTEGER NOT NULL, " +
+                    HourlyEntry.COLUMN_SHORT_DESC + " TEXT NOT NULL, " +
+                    HourlyEntry.COLUMN_WEATHER_ID + " INTEGER NOT NULL," +
+                    HourlyEntry.COLUMN_TEMP + " REAL NOT NULL, " +
+                    HourlyEntry.COLUMN_HUMIDITY + " REAL NOT NULL, " +
+                    HourlyEntry.COLUMN_PRESSURE + " REAL NOT NULL, " +
+                    HourlyEntry.COLUMN_WIND_SPEED + " REAL NOT NULL, " +
+                    HourlyEntry.COLUMN_DEGREES + " REAL NOT NULL, " +
+                    " FOREIGN KEY (" + HourlyEntry.COLUMN_LOC_KEY + ") REFERENCES " +
+                    LocationEntry.TABLE_NAME + " (" + LocationEntry._ID + "), " +
+                    // One row per hour per location.  Location first, so that the index behind
+                    // this constraint also serves the location's hours from a start time on.
+                    " UNIQUE (" + HourlyEntry.COLUMN_LOC_KEY + ", " +
+                    HourlyEntry.COLUMN_TIME + ") ON CONFLICT REPLACE);";
+
+    private static final String SQL_CREATE_HOURLY_TIME_INDEX =
+            "CREATE INDEX IF NOT EXISTS " + INDEX_HOURLY_TIME + " ON " +
+                    HourlyEntry.TABLE_NAME + " (" + HourlyEntry.COLUMN_TIME + ");";
+
+    /**
+     * Connection settings applied every time the database is opened.
+     */
+    static final class Tuning {
+        // The defaults.  Write-ahead logging lets the UI, the widgets and Muzei keep reading while
+        // a sync writes, and NORMAL is as durable as we need for what is only a cache.
+        static final Tuning DEFAULT = new Tuning(true, "NORMAL", 2048, 4 * 1024 * 1024, true);
+
+        final boolean writeAheadLogging;
+        // OFF, NORMAL or FULL
+        final String synchronous;
+        // Page cache per connection, in KiB
+        final int cacheSizeKb;
+        // How much of the file SQLite may memory map, in bytes.  0 turns it off.
+        final long mmapSize;
+        final boolean foreignKeys;
+
+        Tuning(boolean writeAheadLogging, String synchronous, int cacheSizeKb, long mmapSize,
+               boolean foreignKeys) {
+            this.writeAheadLogging = writeAheadLogging;
+            this.synchronous = synchronous;
+            this.cacheSizeKb = cacheSizeKb;
+            this.mmapSize = mmapSize;
+            this.foreignKeys = foreignKeys;
+        }
+    }
+
+    private final Tuning mTuning;
+
     public WeatherDbHelper(Context context) {
+        this(context, Tuning.DEFAULT);
+    }
+
+    WeatherDbHelper(Context context, Tuning tuning) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        mTuning = tuning;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // With write-ahead logging the framework also keeps a pool of read connections, so
+        // queries on other threads no longer wait for the writer.
+        if (mTuning.writeAheadLogging) {
+            db.enableWriteAheadLogging();
+        } else {
+            db.disableWriteAheadLogging();
+        }
+        db.setForeignKeyConstraintsEnabled(mTuning.foreignKeys);
+        // Applies to the primary connection; pooled read connections keep SQLite's defaults.
+        setPragma(db, "synchronous", mTuning.synchronous);
+        // A negative cache_size is in KiB rather than pages.
+        setPragma(db, "cache_size", Integer.toString(-mTuning.cacheSizeKb));
+        setPragma(db, "mmap_size", Long.toString(mTuning.mmapSize));
+    }
+
+    private static void setPragma(SQLiteDatabase db, String pragma, String value) {
+        runPragma(db, pragma + " = " + value);
+    }
+
+    private static void runPragma(SQLiteDatabase db, String pragma) {
+        // Some pragmas report their new value back, which execSQL refuses, so go through a query.
+        // Moving to the first row runs the statement to completion.
+        Cursor cursor = db.rawQuery("PRAGMA " + pragma, null);
+        cursor.moveToFirst();
+        cursor.close();
+    }
+
+    private static final long AUTO_VACUUM_INCREMENTAL = 2;
+
+    /**
+     * Gives the pages that deleted rows left free back to the file system, and refreshes the
+     * statistics the query planner goes by.  Must not be called within a transaction.
+     *
+     * @return by how many bytes the database file shrank
+     */
+    static long compact(SQLiteDatabase db) {
+        long sizeBefore = getDatabaseSize(db);
+        if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null)
+                != AUTO_VACUUM_INCREMENTAL) {
+            // The database doesn't keep track of its free pages yet.  auto_vacuum can't be set
+            // on creation, because SQLiteOpenHelper has made android_metadata by the time we
+            // are called, so converting takes a full VACUUM, which rewrites the file, but only
+            // this once.
+            setPragma(db, "auto_vacuum", "INCREMENTAL");
+            db.execSQL("VACUUM");
+        } else {
+            runPragma(db, "incremental_vacuum");
+        }
+        db.execSQL("ANALYZE");
+        return sizeBefore - getDatabaseSize(db);
+    }
+
+    private static long getDatabaseSize(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db, "PRAGMA page_count", null)
+                * DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
     }
 
     @Override
@@ -81,18 +232,37 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
 
         sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_FORECAST_INDEX);
+        sqLiteDatabase.execSQL(SQL_CREATE_HOURLY_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_HOURLY_TIME_INDEX);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        // This database is only a cache for online data, so its upgrade policy is
-        // to simply to discard the data and start over
-        // Note that this only fires if you change the version number for your database.
-        // It does NOT depend on the version number for your application.
-        // If you want to update the schema without wiping data, commenting out the next 2 lines
-        // should be your top priority before modifying this method.
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
-        onCreate(sqLiteDatabase);
+        // Step through every version in between, so that an upgrade keeps the cached weather and
+        // never costs a re-sync.
+        for (int version = oldVersion; version < newVersion; version++) {
+            Migration migration = findMigration(version);
+            if (migration == null) {
+                // This database is only a cache for online data, so for versions we don't know
+                // how to migrate from, its upgrade policy is to simply to discard the data and
+                // start over.
+                sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + HourlyEntry.TABLE_NAME);
+                sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+                sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
+                onCreate(sqLiteDatabase);
+                return;
+            }
+            migration.migrate(sqLiteDatabase);
+        }
+    }
+
+    private static Migration findMigration(int startVersion) {
+        for (Migration migration : MIGRATIONS) {
+            if (migration.startVersion == startVersion) {
+                return migration;
+            }
+        }
+        return null;
     }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteConstraintException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * A compiled INSERT OR REPLACE into the weather table.  SQLiteDatabase.insert derives the SQL
+ * from each row's key set and binds every value as an Object; this compiles the statement once
+ * and binds each column with its own type, which adds up when a transaction writes many rows.
+ *
+ * Not thread safe.  Use one per transaction, and close it when the transaction is done.
+ */
+class WeatherInsertStatement {
+
+    // The bind order of the statement.  Every column but _ID.
+    private static final String[] COLUMNS = {
+            WeatherEntry.COLUMN_LOC_KEY,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    // these indices must match COLUMNS
+    private static final int INDEX_LOC_KEY = 0;
+    private static final int INDEX_DATE = 1;
+    private static final int INDEX_WEATHER_ID = 2;
+    private static final int INDEX_SHORT_DESC = 3;
+
+    private static final String SQL_INSERT;
+
+    static {
+        StringBuilder sql = new StringBuilder("INSERT OR REPLACE INTO ")
+                .append(WeatherEntry.TABLE_NAME).append(" (");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            sql.append(i > 0 ? ", " : "").append(COLUMNS[i]);
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+        }
+        SQL_INSERT = sql.append(")").toString();
+    }
+
+    private final SQLiteStatement mStatement;
+
+    WeatherInsertStatement(SQLiteDatabase db) {
+        mStatement = db.compileStatement(SQL_INSERT);
+    }
+
+    /**
+     * @return true if the values hold exactly the columns of the statement, false if they need
+     * to go through SQLiteDatabase.insert instead
+     */
+    static boolean canInsert(ContentValues values) {
+        if (values.size() != COLUMNS.length) {
+            return false;
+        }
+        for (String column : COLUMNS) {
+            if (!values.containsKey(column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Inserts the row, replacing any row for the same date and location.  The values must pass
+     * {@link #canInsert(ContentValues)}.
+     *
+     * @return the row ID of the inserted row, or -1 if it violates a constraint
+     */
+    long insert(ContentValues values) {
+        mStatement.clearBindings();
+        for (int i = 0; i < COLUMNS.length; i++) {
+            // bind indices are 1-based
+            int bindIndex = i + 1;
+            String column = COLUMNS[i];
+            if (i == INDEX_LOC_KEY || i == INDEX_DATE || i == INDEX_WEATHER_ID) {
+                Long value = values.getAsLong(column);
+                if (value != null) {
+                    mStatement.bindLong(bindIndex, value);
+                    continue;
+                }
+            } else if (i == INDEX_SHORT_DESC) {
+                String value = values.getAsString(column);
+                if (value != null) {
+                    mStatement.bindString(bindIndex, value);
+                    continue;
+                }
+            } else {
+                Double value = values.getAsDouble(column);
+                if (value != null) {
+                    mStatement.bindDouble(bindIndex, value);
+                    continue;
+                }
+            }
+            // Missing or unconvertible.  The NOT NULL constraint will reject the row.
+            mStatement.bindNull(bindIndex);
+        }
+        try {
+            return mStatement.executeInsert();
+        } catch (SQLiteConstraintException e) {
+            // Same as SQLiteDatabase.insert does.
+            return -1;
+        }
+    }
+
+    void close() {
+        mStatement.close();
+    }
+}
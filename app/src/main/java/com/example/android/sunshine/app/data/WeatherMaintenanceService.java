@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Bundle;
+import android.os.RemoteException;
+import android.preference.PreferenceManager;
+import android.provider.BaseColumns;
+import android.util.Log;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps the weather database from growing for as long as the app is installed.  Once a day,
+ * while the device is idle and charging, this drops the weather whose time has passed and the
+ * locations the user has moved on from, then has the provider give the freed space back to the
+ * file system and refresh the query planner's statistics.
+ * <p>
+ * Each location lives for LOCATION_TTL_IN_MILLIS from the last time this saw it selected.  The
+ * sync fetches every location we hold, so without this an old location would be kept, and
+ * fetched, forever.
+ */
+public class WeatherMaintenanceService extends JobService {
+    private static final String LOG_TAG = WeatherMaintenanceService.class.getSimpleName();
+
+    private static final int JOB_ID = 3005;
+
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+    // Hourly rows are kept until the three hour step they start has passed.
+    public static final long HOURLY_TTL_IN_MILLIS = 1000 * 60 * 60 * 3;
+    // How long a location is kept after it was last the preferred one
+    private static final long LOCATION_TTL_IN_MILLIS = 30 * DAY_IN_MILLIS;
+    // Expired rows are deleted this many at a time, and the database is let go of between lots,
+    // so that a sync never has to wait long for it.
+    private static final int DELETE_BATCH_SIZE = 500;
+
+    private MaintenanceTask mTask;
+
+    /**
+     * Schedules the daily maintenance, unless it already is.
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                // Scheduling it again would start its period over.
+                return;
+            }
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, WeatherMaintenanceService.class))
+                .setPeriodic(DAY_IN_MILLIS)
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .setPersisted(true)
+                .build());
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        mTask = new MaintenanceTask(params);
+        mTask.execute();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        if (mTask != null) {
+            mTask.cancel(false);
+            mTask = null;
+        }
+        // Whatever is left is done next time.
+        return true;
+    }
+
+    private class MaintenanceTask extends AsyncTask<Void, Void, Void> {
+        private final JobParameters mParams;
+
+        MaintenanceTask(JobParameters params) {
+            mParams = params;
+        }
+
+        @Override
+        protected Void doInBackground(Void... params) {
+            long now = System.currentTimeMillis();
+            deleteInBatches(WeatherContract.WeatherEntry.CONTENT_URI,
+                    WeatherContract.WeatherEntry.TABLE_NAME,
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " < ?",
+                    WeatherContract.normalizeDate(now));
+            deleteInBatches(WeatherContract.HourlyEntry.CONTENT_URI,
+                    WeatherContract.HourlyEntry.TABLE_NAME,
+                    WeatherContract.HourlyEntry.COLUMN_TIME + " < ?",
+                    now - HOURLY_TTL_IN_MILLIS);
+            deleteExpiredLocations(now);
+            if (isCancelled()) {
+                return null;
+            }
+
+            Bundle result = getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                    WeatherContract.METHOD_COMPACT, null, null);
+            Log.i(LOG_TAG, "Database compacted, reclaimed "
+                    + result.getLong(WeatherContract.KEY_RECLAIMED_BYTES) + " bytes");
+            return null;
+        }
+
+        @Override
+        protected void onPostExecute(Void result) {
+            jobFinished(mParams, false);
+        }
+
+        /**
+         * Deletes the rows of the table that match "selection", for a single argument.  The
+         * rows go in lots of DELETE_BATCH_SIZE, all in one batch so that observers only hear
+         * about it once, and the provider lets other threads at the database between lots.
+         */
+        private void deleteInBatches(Uri uri, String table, String selection, long arg) {
+            String[] selectionArgs = new String[]{Long.toString(arg)};
+            Cursor cursor = getContentResolver().query(uri, new String[]{"COUNT(*)"},
+                    selection, selectionArgs, null);
+            if (cursor == null) {
+                return;
+            }
+            int count = cursor.moveToFirst() ? cursor.getInt(0) : 0;
+            cursor.close();
+            if (count == 0) {
+                return;
+            }
+
+            // Android's SQLite has no DELETE ... LIMIT, so pick each lot in a subquery.
+            String batchSelection = BaseColumns._ID + " IN (SELECT " + BaseColumns._ID +
+                    " FROM " + table + " WHERE " + selection + " LIMIT " + DELETE_BATCH_SIZE + ")";
+            int numBatches = (count + DELETE_BATCH_SIZE - 1) / DELETE_BATCH_SIZE;
+            ArrayList<ContentProviderOperation> operations =
+                    new ArrayList<ContentProviderOperation>(numBatches);
+            for (int i = 0; i < numBatches; i++) {
+                operations.add(ContentProviderOperation.newDelete(uri)
+                        .withSelection(batchSelection, selectionArgs)
+                        .withYieldAllowed(true)
+                        .build());
+            }
+            try {
+                getContentResolver().applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+            } catch (RemoteException | OperationApplicationException e) {
+                Log.e(LOG_TAG, "Error deleting from " + table, e);
+            }
+        }
+
+        /**
+         * Deletes every location whose time to live ran out, along with its weather.  Each
+         * location goes in a transaction of its own.
+         */
+        private void deleteExpiredLocations(long now) {
+            Context context = WeatherMaintenanceService.this;
+            ContentResolver resolver = getContentResolver();
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+            SharedPreferences.Editor editor = prefs.edit();
+            String lastSelectedPrefix = getString(R.string.pref_location_last_selected_prefix);
+            String preferredLocation = Utility.getPreferredLocation(context);
+
+            Cursor cursor = resolver.query(WeatherContract.LocationEntry.CONTENT_URI,
+                    new String[]{WeatherContract.LocationEntry._ID,
+                            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING},
+                    null, null, null);
+            if (cursor == null) {
+                return;
+            }
+            ArrayList<Long> expiredIds = new ArrayList<Long>();
+            ArrayList<String> expiredSettings = new ArrayList<String>();
+            while (cursor.moveToNext()) {
+                String locationSetting = cursor.getString(1);
+                String lastSelectedKey = lastSelectedPrefix + locationSetting;
+                long lastSelected = prefs.getLong(lastSelectedKey, 0);
+                if (locationSetting.equals(preferredLocation) || lastSelected == 0) {
+                    // Selected now, or seen for the first time: its time to live starts over.
+                    editor.putLong(lastSelectedKey, now);
+                } else if (now - lastSelected > LOCATION_TTL_IN_MILLIS) {
+                    expiredIds.add(cursor.getLong(0));
+                    expiredSettings.add(locationSetting);
+                }
+            }
+            cursor.close();
+            editor.apply();
+
+            for (int i = 0; i < expiredIds.size() && !isCancelled(); i++) {
+                if (deleteLocation(expiredIds.get(i))) {
+                    forgetLocation(editor, expiredSettings.get(i));
+                }
+            }
+            editor.apply();
+        }
+
+        private boolean deleteLocation(long locationId) {
+            String[] selectionArgs = new String[]{Long.toString(locationId)};
+            // Weather rows first: they hold foreign keys into the location table.
+            ArrayList<ContentProviderOperation> operations =
+                    new ArrayList<ContentProviderOperation>(3);
+            operations.add(ContentProviderOperation
+                    .newDelete(WeatherContract.HourlyEntry.CONTENT_URI)
+                    .withSelection(WeatherContract.HourlyEntry.COLUMN_LOC_KEY + " = ?",
+                            selectionArgs)
+                    .build());
+            operations.add(ContentProviderOperation
+                    .newDelete(WeatherContract.WeatherEntry.CONTENT_URI)
+                    .withSelection(WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ?",
+                            selectionArgs)
+                    .build());
+            operations.add(ContentProviderOperation
+                    .newDelete(WeatherContract.LocationEntry.CONTENT_URI)
+                    .withSelection(WeatherContract.LocationEntry._ID + " = ?", selectionArgs)
+                    .build());
+            try {
+                getContentResolver().applyBatch(WeatherContract.CONTENT_AUTHORITY, operations);
+                return true;
+            } catch (RemoteException | OperationApplicationException e) {
+                Log.e(LOG_TAG, "Error deleting location " + locationId, e);
+                return false;
+            }
+        }
+
+        private void forgetLocation(SharedPreferences.Editor editor, String locationSetting) {
+            editor.remove(getString(R.string.pref_location_last_selected_prefix) + locationSetting);
+            editor.remove(getString(R.string.pref_forecast_etag_prefix) + locationSetting);
+            editor.remove(getString(R.string.pref_forecast_last_modified_prefix) + locationSetting);
+            editor.remove(getString(R.string.pref_hourly_etag_prefix) + locationSetting);
+            editor.remove(getString(R.string.pref_hourly_last_modified_prefix) + locationSetting);
+        }
+    }
+}
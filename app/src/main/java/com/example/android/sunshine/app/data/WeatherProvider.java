@@ -17,12 +17,22 @@ package com.example.android.sunshine.app.data;
 
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 
 public class WeatherProvider extends ContentProvider {
 
@@ -33,6 +43,8 @@ public class WeatherProvider extends ContentProvider {
     static final int WEATHER = 100;
     static final int WEATHER_WITH_LOCATION = 101;
     static final int WEATHER_WITH_LOCATION_AND_DATE = 102;
+    static final int HOURLY = 200;
+    static final int HOURLY_WITH_LOCATION = 201;
     static final int LOCATION = 300;
 
     private static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
@@ -51,6 +63,21 @@ public class WeatherProvider extends ContentProvider {
                         "." + WeatherContract.LocationEntry._ID);
     }
 
+    private static final SQLiteQueryBuilder sHourlyByLocationSettingQueryBuilder;
+
+    static{
+        sHourlyByLocationSettingQueryBuilder = new SQLiteQueryBuilder();
+
+        //hourly INNER JOIN location ON hourly.location_id = location._id
+        sHourlyByLocationSettingQueryBuilder.setTables(
+                WeatherContract.HourlyEntry.TABLE_NAME + " INNER JOIN " +
+                        WeatherContract.LocationEntry.TABLE_NAME +
+                        " ON " + WeatherContract.HourlyEntry.TABLE_NAME +
+                        "." + WeatherContract.HourlyEntry.COLUMN_LOC_KEY +
+                        " = " + WeatherContract.LocationEntry.TABLE_NAME +
+                        "." + WeatherContract.LocationEntry._ID);
+    }
+
     //location.location_setting = ?
     private static final String sLocationSettingSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
@@ -62,12 +89,22 @@ public class WeatherProvider extends ContentProvider {
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? ";
 
+    //location_setting = ?, on the location table alone
+    private static final String sLocationSettingRowSelection =
+            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? ";
+
     //location.location_setting = ? AND date = ?
     private static final String sLocationSettingAndDaySelection =
             WeatherContract.LocationEntry.TABLE_NAME +
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ";
 
+    //location.location_setting = ? AND time >= ?
+    private static final String sLocationSettingWithStartTimeSelection =
+            WeatherContract.LocationEntry.TABLE_NAME+
+                    "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
+                    WeatherContract.HourlyEntry.COLUMN_TIME + " >= ? ";
+
     private Cursor getWeatherByLocationSetting(Uri uri, String[] projection, String sortOrder) {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
         long startDate = WeatherContract.WeatherEntry.getStartDateFromUri(uri);
@@ -108,6 +145,31 @@ public class WeatherProvider extends ContentProvider {
         );
     }
 
+    private Cursor getHourlyByLocationSetting(Uri uri, String[] projection, String sortOrder) {
+        String locationSetting = WeatherContract.HourlyEntry.getLocationSettingFromUri(uri);
+        long startTime = WeatherContract.HourlyEntry.getStartTimeFromUri(uri);
+
+        String[] selectionArgs;
+        String selection;
+
+        if (startTime == 0) {
+            selection = sLocationSettingSelection;
+            selectionArgs = new String[]{locationSetting};
+        } else {
+            selectionArgs = new String[]{locationSetting, Long.toString(startTime)};
+            selection = sLocationSettingWithStartTimeSelection;
+        }
+
+        return sHourlyByLocationSettingQueryBuilder.query(mOpenHelper.getReadableDatabase(),
+                projection,
+                selection,
+                selectionArgs,
+                null,
+                null,
+                sortOrder
+        );
+    }
+
     /*
         Students: Here is where you need to create the UriMatcher. This UriMatcher will
         match each URI to the WEATHER, WEATHER_WITH_LOCATION, WEATHER_WITH_LOCATION_AND_DATE,
@@ -129,6 +191,9 @@ public class WeatherProvider extends ContentProvider {
         matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/*", WEATHER_WITH_LOCATION);
         matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/*/#", WEATHER_WITH_LOCATION_AND_DATE);
 
+        matcher.addURI(authority, WeatherContract.PATH_HOURLY, HOURLY);
+        matcher.addURI(authority, WeatherContract.PATH_HOURLY + "/*", HOURLY_WITH_LOCATION);
+
         matcher.addURI(authority, WeatherContract.PATH_LOCATION, LOCATION);
         return matcher;
     }
@@ -162,6 +227,10 @@ public class WeatherProvider extends ContentProvider {
                 return WeatherContract.WeatherEntry.CONTENT_TYPE;
             case WEATHER:
                 return WeatherContract.WeatherEntry.CONTENT_TYPE;
+            case HOURLY_WITH_LOCATION:
+                return WeatherContract.HourlyEntry.CONTENT_TYPE;
+            case HOURLY:
+                return WeatherContract.HourlyEntry.CONTENT_TYPE;
             case LOCATION:
                 return WeatherContract.LocationEntry.CONTENT_TYPE;
             default:
@@ -200,6 +269,24 @@ public class WeatherProvider extends ContentProvider {
                 );
                 break;
             }
+            // "hourly/*"
+            case HOURLY_WITH_LOCATION: {
+                retCursor = getHourlyByLocationSetting(uri, projection, sortOrder);
+                break;
+            }
+            // "hourly"
+            case HOURLY: {
+                retCursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.HourlyEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder
+                );
+                break;
+            }
             // "location"
             case LOCATION: {
                 retCursor = mOpenHelper.getReadableDatabase().query(
@@ -233,15 +320,35 @@ public class WeatherProvider extends ContentProvider {
         switch (match) {
             case WEATHER: {
                 normalizeDate(values);
-                long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, values);
+                long _id;
+                Batch batch = mBatch.get();
+                if (batch != null) {
+                    // Within a batch, identical rows are skipped just like in bulkInsert.
+                    _id = insertWeatherIfChanged(db, values, batch);
+                } else {
+                    _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, values);
+                }
                 if ( _id > 0 )
                     returnUri = WeatherContract.WeatherEntry.buildWeatherUri(_id);
                 else
                     throw new android.database.SQLException("Failed to insert row into " + uri);
+                if (batch == null) {
+                    notifyChange(uri);
+                }
+                break;
+            }
+            case HOURLY: {
+                normalizeTime(values);
+                long _id = db.insert(WeatherContract.HourlyEntry.TABLE_NAME, null, values);
+                if ( _id > 0 )
+                    returnUri = WeatherContract.HourlyEntry.buildHourlyUri(_id);
+                else
+                    throw new android.database.SQLException("Failed to insert row into " + uri);
+                notifyChange(uri);
                 break;
             }
             case LOCATION: {
-                long _id = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, values);
+                long _id = upsertLocation(db, uri, values);
                 if ( _id > 0 )
                     returnUri = WeatherContract.LocationEntry.buildLocationUri(_id);
                 else
@@ -251,10 +358,86 @@ public class WeatherProvider extends ContentProvider {
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
-        getContext().getContentResolver().notifyChange(uri, null);
         return returnUri;
     }
 
+    /**
+     * Location settings are unique, so inserting one we already have updates that row in place
+     * instead of failing.  Its _id, which weather rows point at, stays the same.  Like weather
+     * rows, a location that already holds exactly these values is neither rewritten nor
+     * notified about, which is what every sync of an unchanged forecast does.
+     *
+     * @return the row ID of the location, or -1 if it could not be inserted
+     */
+    private long upsertLocation(SQLiteDatabase db, Uri uri, ContentValues values) {
+        String locationSetting =
+                values.getAsString(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING);
+        if (locationSetting != null) {
+            String[] selectionArgs = new String[]{locationSetting};
+            Cursor cursor = db.query(WeatherContract.LocationEntry.TABLE_NAME, null,
+                    sLocationSettingRowSelection, selectionArgs, null, null, null);
+            long _id = -1;
+            boolean unchanged = false;
+            if (cursor.moveToFirst()) {
+                _id = cursor.getLong(cursor.getColumnIndex(WeatherContract.LocationEntry._ID));
+                unchanged = holdsValues(cursor, values);
+            }
+            cursor.close();
+            if (_id != -1) {
+                if (!unchanged) {
+                    db.update(WeatherContract.LocationEntry.TABLE_NAME, values,
+                            sLocationSettingRowSelection, selectionArgs);
+                    notifyChange(uri);
+                }
+                return _id;
+            }
+        }
+
+        long _id = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, values);
+        if (_id != -1) {
+            notifyChange(uri);
+        }
+        return _id;
+    }
+
+    /**
+     * @return whether the current row of the cursor holds every one of the values
+     */
+    private static boolean holdsValues(Cursor cursor, ContentValues values) {
+        for (Map.Entry<String, Object> entry : values.valueSet()) {
+            int index = cursor.getColumnIndex(entry.getKey());
+            if (index == -1) {
+                return false;
+            }
+            Object stored;
+            switch (cursor.getType(index)) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    stored = cursor.getLong(index);
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    stored = cursor.getDouble(index);
+                    break;
+                case Cursor.FIELD_TYPE_NULL:
+                    stored = null;
+                    break;
+                default:
+                    stored = cursor.getString(index);
+            }
+            if (!isSameValue(entry.getValue(), stored)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSameValue(Object value, Object stored) {
+        if (value instanceof Number && stored instanceof Number) {
+            // Compare as doubles; SQLite stores our ints and floats as REAL anyway.
+            return ((Number) value).doubleValue() == ((Number) stored).doubleValue();
+        }
+        return value == null ? stored == null : value.toString().equals(stored);
+    }
+
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
@@ -267,6 +450,10 @@ public class WeatherProvider extends ContentProvider {
                 rowsDeleted = db.delete(
                         WeatherContract.WeatherEntry.TABLE_NAME, selection, selectionArgs);
                 break;
+            case HOURLY:
+                rowsDeleted = db.delete(
+                        WeatherContract.HourlyEntry.TABLE_NAME, selection, selectionArgs);
+                break;
             case LOCATION:
                 rowsDeleted = db.delete(
                         WeatherContract.LocationEntry.TABLE_NAME, selection, selectionArgs);
@@ -276,7 +463,8 @@ public class WeatherProvider extends ContentProvider {
         }
         // Because a null deletes all rows
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            invalidateSnapshots();
+            notifyChange(uri);
         }
         return rowsDeleted;
     }
@@ -289,6 +477,14 @@ public class WeatherProvider extends ContentProvider {
         }
     }
 
+    private void normalizeTime(ContentValues values) {
+        if (values.containsKey(WeatherContract.HourlyEntry.COLUMN_TIME)) {
+            long timeValue = values.getAsLong(WeatherContract.HourlyEntry.COLUMN_TIME);
+            values.put(WeatherContract.HourlyEntry.COLUMN_TIME,
+                    WeatherContract.HourlyEntry.normalizeTime(timeValue));
+        }
+    }
+
     @Override
     public int update(
             Uri uri, ContentValues values, String selection, String[] selectionArgs) {
@@ -302,6 +498,11 @@ public class WeatherProvider extends ContentProvider {
                 rowsUpdated = db.update(WeatherContract.WeatherEntry.TABLE_NAME, values, selection,
                         selectionArgs);
                 break;
+            case HOURLY:
+                normalizeTime(values);
+                rowsUpdated = db.update(WeatherContract.HourlyEntry.TABLE_NAME, values, selection,
+                        selectionArgs);
+                break;
             case LOCATION:
                 rowsUpdated = db.update(WeatherContract.LocationEntry.TABLE_NAME, values, selection,
                         selectionArgs);
@@ -310,7 +511,8 @@ public class WeatherProvider extends ContentProvider {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            invalidateSnapshots();
+            notifyChange(uri);
         }
         return rowsUpdated;
     }
@@ -321,27 +523,316 @@ public class WeatherProvider extends ContentProvider {
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case WEATHER:
+                boolean outermost = beginBatch();
+                Batch batch = mBatch.get();
+                boolean successful = false;
                 db.beginTransaction();
                 int returnCount = 0;
                 try {
                     for (ContentValues value : values) {
                         normalizeDate(value);
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+                        long _id = insertWeatherIfChanged(db, value, batch);
                         if (_id != -1) {
                             returnCount++;
                         }
                     }
                     db.setTransactionSuccessful();
+                    successful = true;
                 } finally {
                     db.endTransaction();
+                    if (outermost) {
+                        endBatch(successful);
+                    }
                 }
-                getContext().getContentResolver().notifyChange(uri, null);
                 return returnCount;
+            case HOURLY:
+                return bulkInsertHourly(db, uri, values);
             default:
                 return super.bulkInsert(uri, values);
         }
     }
 
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (WeatherContract.METHOD_COMPACT.equals(method)) {
+            Bundle result = new Bundle();
+            result.putLong(WeatherContract.KEY_RECLAIMED_BYTES,
+                    WeatherDbHelper.compact(mOpenHelper.getWritableDatabase()));
+            return result;
+        }
+        return super.call(method, arg, extras);
+    }
+
+    /**
+     * Hours are few columns but many rows, and are all replaced each sync, so unlike the daily
+     * weather they are written without comparing against what is stored.
+     */
+    private int bulkInsertHourly(SQLiteDatabase db, Uri uri, ContentValues[] values) {
+        int returnCount = 0;
+        db.beginTransaction();
+        try {
+            for (ContentValues value : values) {
+                normalizeTime(value);
+                long _id = db.insert(WeatherContract.HourlyEntry.TABLE_NAME, null, value);
+                if (_id != -1) {
+                    returnCount++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (returnCount > 0) {
+            notifyChange(uri);
+        }
+        return returnCount;
+    }
+
+    /**
+     * Applies all of the operations in a single transaction: either all of them take effect or
+     * none do, and readers never see the state in between.  Observers are notified once, after
+     * the transaction commits, for the URIs the batch actually changed.
+     * <p>
+     * The exception is an operation that allows yielding: if another thread is waiting for the
+     * database, what came before it is committed first and the transaction starts over.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        boolean outermost = beginBatch();
+        Batch batch = mBatch.get();
+        boolean successful = false;
+        db.beginTransaction();
+        try {
+            final int numOperations = operations.size();
+            final ContentProviderResult[] results = new ContentProviderResult[numOperations];
+            for (int i = 0; i < numOperations; i++) {
+                ContentProviderOperation operation = operations.get(i);
+                // Within an outer transaction there is nothing we could commit early.
+                if (outermost && i > 0 && operation.isYieldAllowed()
+                        && db.yieldIfContendedSafely()) {
+                    batch.committedEarly = true;
+                    // Another thread may have written meanwhile.
+                    invalidateSnapshots();
+                }
+                results[i] = operation.apply(this, results, i);
+            }
+            db.setTransactionSuccessful();
+            successful = true;
+            return results;
+        } finally {
+            db.endTransaction();
+            if (outermost) {
+                endBatch(successful);
+            }
+        }
+    }
+
+    /**
+     * State shared by the writes of one applyBatch or bulkInsert call, so that identical weather
+     * rows can be skipped and observers notified once at the end.
+     */
+    private static final class Batch {
+        // location_id -> what the weather table holds for that location
+        final HashMap<Long, ForecastSnapshot> snapshots = new HashMap<Long, ForecastSnapshot>();
+        // location_setting -> the dates the batch wrote weather rows for
+        final HashMap<String, ArrayList<Long>> changedDates = new HashMap<String, ArrayList<Long>>();
+        // every other URI that changed, in the order it was changed
+        final LinkedHashSet<Uri> unattributedChanges = new LinkedHashSet<Uri>();
+        // compiled on the first weather row the batch writes
+        WeatherInsertStatement insertStatement;
+        // whether part of the batch was committed before a yield
+        boolean committedEarly;
+    }
+
+    private final ThreadLocal<Batch> mBatch = new ThreadLocal<Batch>();
+
+    /**
+     * @return true if this call started the batch, and is therefore the one to end it
+     */
+    private boolean beginBatch() {
+        if (mBatch.get() != null) {
+            return false;
+        }
+        mBatch.set(new Batch());
+        return true;
+    }
+
+    private void endBatch(boolean successful) {
+        Batch batch = mBatch.get();
+        mBatch.remove();
+        if (batch.insertStatement != null) {
+            batch.insertStatement.close();
+        }
+        if (!successful && !batch.committedEarly) {
+            // Nothing changed after all.
+            return;
+        }
+
+        ContentResolver resolver = getContext().getContentResolver();
+        // Notifying the whole weather table covers every forecast and day beneath it.
+        boolean weatherTableChanged =
+                batch.unattributedChanges.contains(WeatherContract.WeatherEntry.CONTENT_URI);
+        for (Uri uri : batch.unattributedChanges) {
+            resolver.notifyChange(uri, null);
+        }
+        if (weatherTableChanged) {
+            return;
+        }
+        // Otherwise notify the day itself when a single day of a location changed, and the
+        // location's forecast when several did.
+        for (Map.Entry<String, ArrayList<Long>> entry : batch.changedDates.entrySet()) {
+            ArrayList<Long> dates = entry.getValue();
+            if (dates.size() == 1) {
+                resolver.notifyChange(WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
+                        entry.getKey(), dates.get(0)), null);
+            } else {
+                resolver.notifyChange(WeatherContract.WeatherEntry.buildWeatherLocation(
+                        entry.getKey()), null);
+            }
+        }
+    }
+
+    private void notifyChange(Uri uri) {
+        Batch batch = mBatch.get();
+        if (batch != null) {
+            batch.unattributedChanges.add(uri);
+        } else {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
+    private void invalidateSnapshots() {
+        Batch batch = mBatch.get();
+        if (batch != null) {
+            batch.snapshots.clear();
+        }
+    }
+
+    /**
+     * Rows are unique per (date, location) and replaced on conflict, so writing a row identical to
+     * the stored one would only churn it and wake up every observer.  This skips those, and
+     * records which dates really changed.  The values must already be normalized.
+     *
+     * @return the row ID of the (new or unchanged) row, or -1 if it could not be inserted
+     */
+    private long insertWeatherIfChanged(SQLiteDatabase db, ContentValues value, Batch batch) {
+        Long locationId = value.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+        Long date = value.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+        ForecastSnapshot snapshot = null;
+        if (locationId != null && date != null) {
+            snapshot = batch.snapshots.get(locationId);
+            if (snapshot == null) {
+                snapshot = loadForecastSnapshot(db, locationId);
+                batch.snapshots.put(locationId, snapshot);
+            }
+            long unchangedId = snapshot.getUnchangedRowId(date, value);
+            if (unchangedId != -1) {
+                return unchangedId;
+            }
+        }
+
+        long _id;
+        if (WeatherInsertStatement.canInsert(value)) {
+            if (batch.insertStatement == null) {
+                batch.insertStatement = new WeatherInsertStatement(db);
+            }
+            _id = batch.insertStatement.insert(value);
+        } else {
+            _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+        }
+        if (_id == -1) {
+            return -1;
+        }
+        if (snapshot != null && snapshot.locationSetting != null) {
+            ContentValues stored = new ContentValues(value);
+            stored.put(WeatherContract.WeatherEntry._ID, _id);
+            snapshot.rows.put(date, stored);
+
+            ArrayList<Long> dates = batch.changedDates.get(snapshot.locationSetting);
+            if (dates == null) {
+                dates = new ArrayList<Long>();
+                batch.changedDates.put(snapshot.locationSetting, dates);
+            }
+            if (!dates.contains(date)) {
+                dates.add(date);
+            }
+        } else {
+            batch.unattributedChanges.add(WeatherContract.WeatherEntry.CONTENT_URI);
+        }
+        return _id;
+    }
+
+    /**
+     * The weather rows a location has, keyed by normalized date.
+     */
+    private static final class ForecastSnapshot {
+        // null if the location row doesn't exist
+        String locationSetting;
+        final HashMap<Long, ContentValues> rows = new HashMap<Long, ContentValues>();
+
+        /**
+         * @return the row ID of the stored row for this date if it already holds exactly the
+         * incoming values, -1 otherwise
+         */
+        long getUnchangedRowId(long date, ContentValues incoming) {
+            ContentValues existing = rows.get(date);
+            if (existing == null) {
+                return -1;
+            }
+            for (Map.Entry<String, Object> entry : incoming.valueSet()) {
+                if (!isSameValue(entry.getValue(), existing.get(entry.getKey()))) {
+                    return -1;
+                }
+            }
+            return existing.getAsLong(WeatherContract.WeatherEntry._ID);
+        }
+    }
+
+    private ForecastSnapshot loadForecastSnapshot(SQLiteDatabase db, long locationId) {
+        ForecastSnapshot snapshot = new ForecastSnapshot();
+        String[] selectionArgs = new String[]{Long.toString(locationId)};
+
+        Cursor cursor = db.query(WeatherContract.LocationEntry.TABLE_NAME,
+                new String[]{WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING},
+                WeatherContract.LocationEntry._ID + " = ?", selectionArgs, null, null, null);
+        if (cursor.moveToFirst()) {
+            snapshot.locationSetting = cursor.getString(0);
+        }
+        cursor.close();
+
+        cursor = db.query(WeatherContract.WeatherEntry.TABLE_NAME, null,
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ?", selectionArgs,
+                null, null, null);
+        int dateIndex = cursor.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
+        int columnCount = cursor.getColumnCount();
+        while (cursor.moveToNext()) {
+            // Keep the stored types, rather than the Strings DatabaseUtils would give us, so
+            // that REAL columns compare exactly.
+            ContentValues row = new ContentValues(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                String column = cursor.getColumnName(i);
+                switch (cursor.getType(i)) {
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        row.put(column, cursor.getLong(i));
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        row.put(column, cursor.getDouble(i));
+                        break;
+                    case Cursor.FIELD_TYPE_NULL:
+                        row.putNull(column);
+                        break;
+                    default:
+                        row.put(column, cursor.getString(i));
+                }
+            }
+            snapshot.rows.put(cursor.getLong(dateIndex), row);
+        }
+        cursor.close();
+        return snapshot;
+    }
+
     // You do not need to call this method. This is a method specifically to assist the testing
     // framework in running smoothly. You can read more at:
     // http://developer.android.com/reference/android/content/ContentProvider.html#shutdown()
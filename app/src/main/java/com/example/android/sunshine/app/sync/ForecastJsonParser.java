@@ -0,0 +1,298 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentValues;
+import android.text.format.Time;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.MalformedJsonException;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.util.Vector;
+
+/**
+ * Pull-parses the OpenWeatherMap daily forecast response straight off the connection's
+ * InputStream into ContentValues rows.  Neither the raw payload nor a JSONObject tree is ever
+ * held in memory; only the rows we are going to insert are.
+ */
+class ForecastJsonParser {
+
+    // These are the names of the JSON objects that need to be extracted.
+
+    // Location information
+    private static final String OWM_CITY = "city";
+    private static final String OWM_CITY_NAME = "name";
+    private static final String OWM_COORD = "coord";
+
+    // Location coordinate
+    private static final String OWM_LATITUDE = "lat";
+    private static final String OWM_LONGITUDE = "lon";
+
+    // Weather information.  Each day's forecast info is an element of the "list" array.
+    private static final String OWM_LIST = "list";
+
+    private static final String OWM_PRESSURE = "pressure";
+    private static final String OWM_HUMIDITY = "humidity";
+    private static final String OWM_WINDSPEED = "speed";
+    private static final String OWM_WIND_DIRECTION = "deg";
+
+    // All temperatures are children of the "temp" object.
+    private static final String OWM_TEMPERATURE = "temp";
+    private static final String OWM_MAX = "max";
+    private static final String OWM_MIN = "min";
+
+    private static final String OWM_WEATHER = "weather";
+    private static final String OWM_DESCRIPTION = "main";
+    private static final String OWM_WEATHER_ID = "id";
+
+    private static final String OWM_MESSAGE_CODE = "cod";
+
+    /**
+     * Everything we pull out of a single forecast response.  The weather rows don't carry a
+     * location key yet, because "city" may well come after "list" in the stream.
+     */
+    static final class Forecast {
+        int messageCode = HttpURLConnection.HTTP_OK;
+        String cityName;
+        double cityLatitude;
+        double cityLongitude;
+        final Vector<ContentValues> weatherValues = new Vector<ContentValues>(14);
+    }
+
+    private final int mJulianStartDay;
+    // we work exclusively in UTC
+    private final Time mDayTime = new Time();
+
+    /**
+     * @param julianStartDay the julian day of the first entry in the forecast list, as seen
+     *                       from local time.  Following entries are one day apart.
+     */
+    ForecastJsonParser(int julianStartDay) {
+        mJulianStartDay = julianStartDay;
+    }
+
+    /**
+     * Reads one element of the "list" array into a row.
+     */
+    interface RowReader {
+        /**
+         * @param index the element's position in the list
+         */
+        ContentValues readRow(JsonReader reader, int index) throws IOException;
+    }
+
+    /**
+     * Reads the whole forecast from the given stream.  The stream is not closed.
+     *
+     * @throws IOException if the stream could not be read
+     * @throws JSONException if the stream doesn't hold a forecast we understand
+     */
+    Forecast parse(InputStream in) throws IOException, JSONException {
+        return parse(in, new RowReader() {
+            @Override
+            public ContentValues readRow(JsonReader reader, int index) throws IOException {
+                return readDay(reader, mJulianStartDay + index);
+            }
+        }, DAILY_COLUMNS);
+    }
+
+    /**
+     * Reads a whole forecast, daily or hourly, from the given stream.  The stream is not closed.
+     *
+     * @param rowReader reads each element of the "list" array
+     * @param requiredColumns the columns a row must have to be kept
+     * @throws IOException if the stream could not be read
+     * @throws JSONException if the stream doesn't hold a forecast we understand
+     */
+    static Forecast parse(InputStream in, RowReader rowReader, String[] requiredColumns)
+            throws IOException, JSONException {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            return readForecast(reader, rowReader, requiredColumns);
+        } catch (MalformedJsonException | IllegalStateException | NumberFormatException e) {
+            // Treat these the same way a malformed JSONObject would be treated.
+            throw new JSONException(e.getMessage());
+        }
+    }
+
+    private static Forecast readForecast(JsonReader reader, RowReader rowReader,
+            String[] requiredColumns) throws IOException, JSONException {
+        Forecast forecast = new Forecast();
+        boolean hasCity = false;
+        boolean hasList = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (OWM_MESSAGE_CODE.equals(name)) {
+                // OWM sends this as a string on success and as a number on some errors.
+                // nextInt() copes with both.
+                forecast.messageCode = reader.nextInt();
+                if (forecast.messageCode != HttpURLConnection.HTTP_OK) {
+                    // Nothing else in the payload is useful to us.
+                    return forecast;
+                }
+            } else if (OWM_CITY.equals(name)) {
+                readCity(reader, forecast);
+                hasCity = true;
+            } else if (OWM_LIST.equals(name)) {
+                readList(reader, forecast, rowReader, requiredColumns);
+                hasList = true;
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (!hasCity || !hasList) {
+            throw new JSONException("No value for " + (hasCity ? OWM_LIST : OWM_CITY));
+        }
+        return forecast;
+    }
+
+    private static void readCity(JsonReader reader, Forecast forecast) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (OWM_CITY_NAME.equals(name)) {
+                forecast.cityName = reader.nextString();
+            } else if (OWM_COORD.equals(name)) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String coordName = reader.nextName();
+                    if (OWM_LATITUDE.equals(coordName)) {
+                        forecast.cityLatitude = reader.nextDouble();
+                    } else if (OWM_LONGITUDE.equals(coordName)) {
+                        forecast.cityLongitude = reader.nextDouble();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readList(JsonReader reader, Forecast forecast, RowReader rowReader,
+            String[] requiredColumns) throws IOException {
+        reader.beginArray();
+        int i = 0;
+        while (reader.hasNext()) {
+            ContentValues rowValues = rowReader.readRow(reader, i);
+            // Our weather columns are all NOT NULL, and a single failed insert would throw out
+            // the whole sync, so leave out any row that's missing something.  The rows after it
+            // keep their dates.
+            if (isComplete(rowValues, requiredColumns)) {
+                forecast.weatherValues.add(rowValues);
+            }
+            i++;
+        }
+        reader.endArray();
+    }
+
+    private static final String[] DAILY_COLUMNS = {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_DEGREES
+    };
+
+    private static boolean isComplete(ContentValues values, String[] requiredColumns) {
+        for (String column : requiredColumns) {
+            if (!values.containsKey(column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ContentValues readDay(JsonReader reader, int julianDay) throws IOException {
+        ContentValues weatherValues = new ContentValues();
+
+        // Cheating to convert this to UTC time, which is what we want anyhow
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                mDayTime.setJulianDay(julianDay));
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (OWM_PRESSURE.equals(name)) {
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, reader.nextDouble());
+            } else if (OWM_HUMIDITY.equals(name)) {
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, reader.nextInt());
+            } else if (OWM_WINDSPEED.equals(name)) {
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, reader.nextDouble());
+            } else if (OWM_WIND_DIRECTION.equals(name)) {
+                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, reader.nextDouble());
+            } else if (OWM_TEMPERATURE.equals(name)) {
+                // Temperatures are in a child object called "temp".  Try not to name variables
+                // "temp" when working with temperature.  It confuses everybody.
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String tempName = reader.nextName();
+                    if (OWM_MAX.equals(tempName)) {
+                        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, reader.nextDouble());
+                    } else if (OWM_MIN.equals(tempName)) {
+                        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, reader.nextDouble());
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if (OWM_WEATHER.equals(name)) {
+                readCondition(reader, weatherValues,
+                        WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+                        WeatherContract.WeatherEntry.COLUMN_WEATHER_ID);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return weatherValues;
+    }
+
+    /**
+     * Reads the "weather" value of a list element.  The description and the weather code are in
+     * a child array, which is 1 element long.  Anything that isn't such an array is skipped.
+     */
+    static void readCondition(JsonReader reader, ContentValues values, String descriptionColumn,
+            String weatherIdColumn) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginArray();
+        if (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (OWM_DESCRIPTION.equals(name)) {
+                    values.put(descriptionColumn, reader.nextString());
+                } else if (OWM_WEATHER_ID.equals(name)) {
+                    values.put(weatherIdColumn, reader.nextInt());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+        reader.endArray();
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentValues;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Pull-parses the OpenWeatherMap three hour forecast response straight off the connection's
+ * InputStream into hourly ContentValues rows, the same way {@link ForecastJsonParser} does for
+ * the daily one.  There are some 40 entries, each a few times the size of a daily one, so this
+ * matters more here.  Only reading an entry is done here; the rest of the response is read by
+ * ForecastJsonParser.
+ */
+class HourlyJsonParser {
+
+    // Seconds since the epoch, in UTC
+    private static final String OWM_TIME = "dt";
+
+    // Temperature, pressure and humidity are children of the "main" object.
+    private static final String OWM_MAIN = "main";
+    private static final String OWM_TEMPERATURE = "temp";
+    private static final String OWM_PRESSURE = "pressure";
+    private static final String OWM_HUMIDITY = "humidity";
+
+    // Wind speed and direction are children of the "wind" object.
+    private static final String OWM_WIND = "wind";
+    private static final String OWM_WINDSPEED = "speed";
+    private static final String OWM_WIND_DIRECTION = "deg";
+
+    private static final String OWM_WEATHER = "weather";
+
+    private static final String[] HOURLY_COLUMNS = {
+            WeatherContract.HourlyEntry.COLUMN_TIME,
+            WeatherContract.HourlyEntry.COLUMN_SHORT_DESC,
+            WeatherContract.HourlyEntry.COLUMN_WEATHER_ID,
+            WeatherContract.HourlyEntry.COLUMN_TEMP,
+            WeatherContract.HourlyEntry.COLUMN_HUMIDITY,
+            WeatherContract.HourlyEntry.COLUMN_PRESSURE,
+            WeatherContract.HourlyEntry.COLUMN_WIND_SPEED,
+            WeatherContract.HourlyEntry.COLUMN_DEGREES
+    };
+
+    /**
+     * Reads the whole forecast from the given stream.  The stream is not closed.  The rows in
+     * the returned forecast's weatherValues are hourly rows, without a location key.
+     *
+     * @throws IOException if the stream could not be read
+     * @throws JSONException if the stream doesn't hold a forecast we understand
+     */
+    ForecastJsonParser.Forecast parse(InputStream in) throws IOException, JSONException {
+        return ForecastJsonParser.parse(in, new ForecastJsonParser.RowReader() {
+            @Override
+            public ContentValues readRow(JsonReader reader, int index) throws IOException {
+                return readHour(reader);
+            }
+        }, HOURLY_COLUMNS);
+    }
+
+    private static ContentValues readHour(JsonReader reader) throws IOException {
+        ContentValues hourValues = new ContentValues();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (OWM_TIME.equals(name)) {
+                hourValues.put(WeatherContract.HourlyEntry.COLUMN_TIME, reader.nextLong() * 1000);
+            } else if (OWM_MAIN.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String mainName = reader.nextName();
+                    if (OWM_TEMPERATURE.equals(mainName)) {
+                        hourValues.put(WeatherContract.HourlyEntry.COLUMN_TEMP, reader.nextDouble());
+                    } else if (OWM_PRESSURE.equals(mainName)) {
+                        hourValues.put(WeatherContract.HourlyEntry.COLUMN_PRESSURE, reader.nextDouble());
+                    } else if (OWM_HUMIDITY.equals(mainName)) {
+                        hourValues.put(WeatherContract.HourlyEntry.COLUMN_HUMIDITY, reader.nextInt());
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if (OWM_WIND.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String windName = reader.nextName();
+                    if (OWM_WINDSPEED.equals(windName)) {
+                        hourValues.put(WeatherContract.HourlyEntry.COLUMN_WIND_SPEED, reader.nextDouble());
+                    } else if (OWM_WIND_DIRECTION.equals(windName)) {
+                        hourValues.put(WeatherContract.HourlyEntry.COLUMN_DEGREES, reader.nextDouble());
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else if (OWM_WEATHER.equals(name)) {
+                ForecastJsonParser.readCondition(reader, hourValues,
+                        WeatherContract.HourlyEntry.COLUMN_SHORT_DESC,
+                        WeatherContract.HourlyEntry.COLUMN_WEATHER_ID);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return hourValues;
+    }
+}
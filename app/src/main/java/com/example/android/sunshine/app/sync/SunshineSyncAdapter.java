@@ -7,11 +7,12 @@ import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.AbstractThreadedSyncAdapter;
 import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
-import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.OperationApplicationException;
 import android.content.SharedPreferences;
 import android.content.SyncRequest;
 import android.content.SyncResult;
@@ -22,6 +23,7 @@ import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.RemoteException;
 import android.preference.PreferenceManager;
 import android.support.annotation.IntDef;
 import android.support.v4.app.NotificationCompat;
@@ -35,22 +37,27 @@ import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.WeatherMaintenanceService;
 import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
+import com.example.android.sunshine.app.wear.WearWeatherService;
 
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public final String LOG_TAG = SunshineSyncAdapter.class.getSimpleName();
@@ -62,6 +69,9 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     public static final int SYNC_FLEXTIME = SYNC_INTERVAL/3;
     private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
     private static final int WEATHER_NOTIFICATION_ID = 3004;
+    // Every location is fetched from the same OWM host, so this is also our per-host
+    // connection limit.
+    private static final int MAX_CONCURRENT_FETCHES = 3;
 
 
     private static final String[] NOTIFY_WEATHER_PROJECTION = new String[] {
@@ -94,15 +104,116 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     @Override
     public void onPerformSync(Account account, Bundle extras, String authority, ContentProviderClient provider, SyncResult syncResult) {
         Log.d(LOG_TAG, "Starting sync");
-        String locationQuery = Utility.getPreferredLocation(getContext());
+        final String preferredLocation = Utility.getPreferredLocation(getContext());
+        Set<String> locations = getLocationsToSync(preferredLocation);
+
+        // OWM returns daily forecasts based upon the local time of the city that is being
+        // asked for, which means that we need to know the GMT offset to translate this data
+        // properly.
+
+        // Since this data is also sent in-order and the first day is always the
+        // current day, we're going to take advantage of that to get a nice
+        // normalized UTC date for all of our weather.
+        Time dayTime = new Time();
+        dayTime.setToNow();
+
+        // we start at the day returned by local time. Otherwise this is a mess.
+        final int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+
+        // Fetch every location at once, but never more than MAX_CONCURRENT_FETCHES at a time.
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(locations.size(), MAX_CONCURRENT_FETCHES));
+        List<Future<FetchResult>> futures = new ArrayList<Future<FetchResult>>(locations.size());
+        List<FetchResult> results = new ArrayList<FetchResult>(locations.size());
+        try {
+            for (final String locationSetting : locations) {
+                futures.add(executor.submit(new Callable<FetchResult>() {
+                    @Override
+                    public FetchResult call() {
+                        FetchResult result = fetchForecast(locationSetting, julianStartDay);
+                        // Only the preferred location is shown hour by hour, on the watch face
+                        // and in notifications.  Other locations' hours would be fetched for
+                        // nothing.
+                        if (locationSetting.equals(preferredLocation)
+                                && result.status == LOCATION_STATUS_OK) {
+                            fetchHourlyForecast(result);
+                        }
+                        return result;
+                    }
+                }));
+            }
+            for (Future<FetchResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    Log.e(LOG_TAG, "Error fetching forecast", e);
+                }
+            }
+        } catch (InterruptedException e) {
+            // The sync was cancelled.
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            executor.shutdownNow();
+        }
 
-        // These two need to be declared outside the try/catch
-        // so that they can be closed in the finally block.
-        HttpURLConnection urlConnection = null;
-        BufferedReader reader = null;
+        storeForecasts(results, preferredLocation, julianStartDay);
+    }
 
-        // Will contain the raw JSON response as a string.
-        String forecastJsonStr = null;
+    /**
+     * The outcome of fetching the forecast for a single location.
+     */
+    private static final class FetchResult {
+        final String locationSetting;
+        @LocationStatus int status = LOCATION_STATUS_SERVER_DOWN;
+        // null unless there is a new forecast to store
+        ForecastJsonParser.Forecast forecast;
+        // null unless there is a new hourly forecast to store
+        ForecastJsonParser.Forecast hourly;
+        // HTTP cache validators of the forecast
+        String eTag;
+        long lastModified;
+        // HTTP cache validators of the hourly forecast
+        String hourlyETag;
+        long hourlyLastModified;
+
+        FetchResult(String locationSetting) {
+            this.locationSetting = locationSetting;
+        }
+    }
+
+    /**
+     * The preferred location, followed by every other location we hold in the location table.
+     */
+    private Set<String> getLocationsToSync(String preferredLocation) {
+        Set<String> locations = new LinkedHashSet<String>();
+        locations.add(preferredLocation);
+
+        Cursor locationCursor = getContext().getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                new String[]{WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING},
+                null,
+                null,
+                null);
+        if (locationCursor != null) {
+            while (locationCursor.moveToNext()) {
+                locations.add(locationCursor.getString(0));
+            }
+            locationCursor.close();
+        }
+        return locations;
+    }
+
+    /**
+     * Downloads and parses the forecast for a single location.  This is called concurrently for
+     * several locations, so it must not touch the database beyond reading from it.
+     */
+    private FetchResult fetchForecast(String locationQuery, int julianStartDay) {
+        FetchResult result = new FetchResult(locationQuery);
+
+        // This needs to be declared outside the try/catch
+        // so that it can be closed in the finally block.
+        HttpURLConnection urlConnection = null;
 
         String format = "json";
         String units = "metric";
@@ -133,229 +244,323 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
             // Create the request to OpenWeatherMap, and open the connection
             urlConnection = (HttpURLConnection) url.openConnection();
             urlConnection.setRequestMethod("GET");
+            Context context = getContext();
+            addCacheValidators(urlConnection,
+                    context.getString(R.string.pref_forecast_etag_prefix) + locationQuery,
+                    context.getString(R.string.pref_forecast_last_modified_prefix) + locationQuery,
+                    hasCachedForecast(locationQuery));
             urlConnection.connect();
 
-            // Read the input stream into a String
+            if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                // What we stored last time is still current, so there is nothing to parse,
+                // write or tell anybody about.
+                Log.d(LOG_TAG, "Forecast not modified for " + locationQuery);
+                result.status = LOCATION_STATUS_OK;
+                return result;
+            }
+
             InputStream inputStream = urlConnection.getInputStream();
-            StringBuffer buffer = new StringBuffer();
             if (inputStream == null) {
                 // Nothing to do.
-                return;
-            }
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Since it's JSON, adding a newline isn't necessary (it won't affect parsing)
-                // But it does make debugging a *lot* easier if you print out the completed
-                // buffer for debugging.
-                buffer.append(line + "\n");
+                return result;
             }
 
-            if (buffer.length() == 0) {
-                // Stream was empty.  No point in parsing.
-                setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                return;
+            // Parse straight off the wire.  An empty stream surfaces as an EOFException,
+            // which is reported as the server being down, same as any other read failure.
+            ForecastJsonParser.Forecast forecast =
+                    new ForecastJsonParser(julianStartDay).parse(inputStream);
+
+            // do we have an error?
+            switch (forecast.messageCode) {
+                case HttpURLConnection.HTTP_OK:
+                    result.status = LOCATION_STATUS_OK;
+                    result.forecast = forecast;
+                    result.eTag = urlConnection.getHeaderField("ETag");
+                    result.lastModified = urlConnection.getLastModified();
+                    break;
+                case HttpURLConnection.HTTP_NOT_FOUND:
+                    result.status = LOCATION_STATUS_INVALID;
+                    break;
+                default:
+                    result.status = LOCATION_STATUS_SERVER_DOWN;
+                    break;
             }
-            forecastJsonStr = buffer.toString();
-            getWeatherDataFromJson(forecastJsonStr, locationQuery);
         } catch (IOException e) {
             Log.e(LOG_TAG, "Error ", e);
             // If the code didn't successfully get the weather data, there's no point in attempting
             // to parse it.
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
+            result.status = LOCATION_STATUS_SERVER_DOWN;
         } catch (JSONException e) {
             Log.e(LOG_TAG, e.getMessage(), e);
             e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
+            result.status = LOCATION_STATUS_SERVER_INVALID;
         } finally {
             if (urlConnection != null) {
+                // Also closes the input stream.
                 urlConnection.disconnect();
             }
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (final IOException e) {
-                    Log.e(LOG_TAG, "Error closing stream", e);
-                }
-            }
         }
-        return;
+        return result;
     }
 
     /**
-     * Take the String representing the complete forecast in JSON Format and
-     * pull out the data we need to construct the Strings needed for the wireframes.
-     *
-     * Fortunately parsing is easy:  constructor takes the JSON string and converts it
-     * into an Object hierarchy for us.
+     * Downloads and parses the three hour forecast for the location of a result, into that
+     * result.  Like the daily one it is conditional, so a sync within the same step costs a 304.
+     * Failures are only logged, as the location status is about the daily forecast.
      */
-    private void getWeatherDataFromJson(String forecastJsonStr,
-                                        String locationSetting)
-            throws JSONException {
-
-        // Now we have a String representing the complete forecast in JSON Format.
-        // Fortunately parsing is easy:  constructor takes the JSON string and converts it
-        // into an Object hierarchy for us.
-
-        // These are the names of the JSON objects that need to be extracted.
-
-        // Location information
-        final String OWM_CITY = "city";
-        final String OWM_CITY_NAME = "name";
-        final String OWM_COORD = "coord";
-
-        // Location coordinate
-        final String OWM_LATITUDE = "lat";
-        final String OWM_LONGITUDE = "lon";
-
-        // Weather information.  Each day's forecast info is an element of the "list" array.
-        final String OWM_LIST = "list";
+    private void fetchHourlyForecast(FetchResult result) {
+        String locationQuery = result.locationSetting;
+        HttpURLConnection urlConnection = null;
+        try {
+            final String HOURLY_BASE_URL =
+                    "http://api.openweathermap.org/data/2.5/forecast?";
+            final String QUERY_PARAM = "q";
+            final String FORMAT_PARAM = "mode";
+            final String UNITS_PARAM = "units";
+            final String APPID_PARAM = "APPID";
 
-        final String OWM_PRESSURE = "pressure";
-        final String OWM_HUMIDITY = "humidity";
-        final String OWM_WINDSPEED = "speed";
-        final String OWM_WIND_DIRECTION = "deg";
+            Uri builtUri = Uri.parse(HOURLY_BASE_URL).buildUpon()
+                    .appendQueryParameter(QUERY_PARAM, locationQuery)
+                    .appendQueryParameter(FORMAT_PARAM, "json")
+                    .appendQueryParameter(UNITS_PARAM, "metric")
+                    .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
+                    .build();
 
-        // All temperatures are children of the "temp" object.
-        final String OWM_TEMPERATURE = "temp";
-        final String OWM_MAX = "max";
-        final String OWM_MIN = "min";
+            urlConnection = (HttpURLConnection) new URL(builtUri.toString()).openConnection();
+            urlConnection.setRequestMethod("GET");
+            Context context = getContext();
+            addCacheValidators(urlConnection,
+                    context.getString(R.string.pref_hourly_etag_prefix) + locationQuery,
+                    context.getString(R.string.pref_hourly_last_modified_prefix) + locationQuery,
+                    hasCachedHours(locationQuery));
+            urlConnection.connect();
 
-        final String OWM_WEATHER = "weather";
-        final String OWM_DESCRIPTION = "main";
-        final String OWM_WEATHER_ID = "id";
+            if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                Log.d(LOG_TAG, "Hourly forecast not modified for " + locationQuery);
+                return;
+            }
 
-        final String OWM_MESSAGE_CODE = "cod";
+            InputStream inputStream = urlConnection.getInputStream();
+            if (inputStream == null) {
+                return;
+            }
+            ForecastJsonParser.Forecast hourly = new HourlyJsonParser().parse(inputStream);
+            if (hourly.messageCode != HttpURLConnection.HTTP_OK) {
+                Log.w(LOG_TAG, "Hourly forecast failed for " + locationQuery + ": "
+                        + hourly.messageCode);
+                return;
+            }
+            result.hourly = hourly;
+            result.hourlyETag = urlConnection.getHeaderField("ETag");
+            result.hourlyLastModified = urlConnection.getLastModified();
+        } catch (IOException | JSONException e) {
+            Log.e(LOG_TAG, "Error fetching the hourly forecast", e);
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+        }
+    }
 
-        try {
-            JSONObject forecastJson = new JSONObject(forecastJsonStr);
+    /**
+     * Take the forecasts pulled off the wire by {@link ForecastJsonParser} and write them to the
+     * database in a single batch, then let everybody who cares know about it.  The location
+     * status only reflects the preferred location, since that is the one the UI shows.
+     */
+    private void storeForecasts(List<FetchResult> results, String preferredLocation,
+                                int julianStartDay) {
+        @LocationStatus int preferredStatus = LOCATION_STATUS_SERVER_DOWN;
+        List<FetchResult> stored = new ArrayList<FetchResult>(results.size());
+        List<FetchResult> storedHourly = new ArrayList<FetchResult>(1);
+        ArrayList<ContentProviderOperation> operations = new ArrayList<ContentProviderOperation>();
+        int weatherCount = 0;
+        int hourlyCount = 0;
+
+        for (FetchResult result : results) {
+            if (result.locationSetting.equals(preferredLocation)) {
+                preferredStatus = result.status;
+            }
+            boolean hasForecast =
+                    result.forecast != null && !result.forecast.weatherValues.isEmpty();
+            boolean hasHourly = result.hourly != null && !result.hourly.weatherValues.isEmpty();
+            if (!hasForecast && !hasHourly) {
+                continue;
+            }
 
-            // do we have an error?
-            if ( forecastJson.has(OWM_MESSAGE_CODE) ) {
-                int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
-
-                switch (errorCode) {
-                    case HttpURLConnection.HTTP_OK:
-                        break;
-                    case HttpURLConnection.HTTP_NOT_FOUND:
-                        setLocationStatus(getContext(), LOCATION_STATUS_INVALID);
-                        return;
-                    default:
-                        setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                        return;
+            // The provider inserts the location, or updates it if we already have it.  Either
+            // way the weather rows pick up its id from the result of this operation.  New hours
+            // alone don't refresh the city, so they only need it when the location is new.
+            long locationId = hasForecast ? -1 : getLocationId(result.locationSetting);
+            int locationOperationIndex = operations.size();
+            if (locationId == -1) {
+                ForecastJsonParser.Forecast city = hasForecast ? result.forecast : result.hourly;
+                operations.add(ContentProviderOperation
+                        .newInsert(WeatherContract.LocationEntry.CONTENT_URI)
+                        .withValues(getLocationValues(result.locationSetting, city.cityName,
+                                city.cityLatitude, city.cityLongitude))
+                        .build());
+            }
+            if (hasForecast) {
+                for (ContentValues weatherValues : result.forecast.weatherValues) {
+                    operations.add(ContentProviderOperation
+                            .newInsert(WeatherContract.WeatherEntry.CONTENT_URI)
+                            .withValues(weatherValues)
+                            .withValueBackReference(WeatherContract.WeatherEntry.COLUMN_LOC_KEY,
+                                    locationOperationIndex)
+                            .build());
                 }
+                weatherCount += result.forecast.weatherValues.size();
+                stored.add(result);
             }
+            if (hasHourly) {
+                for (ContentValues hourValues : result.hourly.weatherValues) {
+                    ContentProviderOperation.Builder builder = ContentProviderOperation
+                            .newInsert(WeatherContract.HourlyEntry.CONTENT_URI)
+                            .withValues(hourValues);
+                    if (locationId == -1) {
+                        builder.withValueBackReference(
+                                WeatherContract.HourlyEntry.COLUMN_LOC_KEY, locationOperationIndex);
+                    } else {
+                        builder.withValue(WeatherContract.HourlyEntry.COLUMN_LOC_KEY, locationId);
+                    }
+                    operations.add(builder.build());
+                }
+                hourlyCount += result.hourly.weatherValues.size();
+                storedHourly.add(result);
+            }
+        }
 
-            JSONArray weatherArray = forecastJson.getJSONArray(OWM_LIST);
-
-            JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
-            String cityName = cityJson.getString(OWM_CITY_NAME);
-
-            JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
-            double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
-            double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
-
-            long locationId = addLocation(locationSetting, cityName, cityLatitude, cityLongitude);
+        // add to database
+        if ( weatherCount > 0 || hourlyCount > 0 ) {
+            // delete old data so we don't build up an endless history
+            Time dayTime = new Time();
+            operations.add(ContentProviderOperation
+                    .newDelete(WeatherContract.WeatherEntry.CONTENT_URI)
+                    .withSelection(WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
+                            new String[] {Long.toString(dayTime.setJulianDay(julianStartDay-1))})
+                    .build());
+            // Hours expire for every location at once, through the time index, including
+            // those of locations we no longer fetch hours for.
+            operations.add(ContentProviderOperation
+                    .newDelete(WeatherContract.HourlyEntry.CONTENT_URI)
+                    .withSelection(WeatherContract.HourlyEntry.COLUMN_TIME + " < ?",
+                            new String[] {Long.toString(
+                                    System.currentTimeMillis()
+                                            - WeatherMaintenanceService.HOURLY_TTL_IN_MILLIS)})
+                    .build());
+
+            // All of it happens in one transaction, with a single round of change notifications.
+            try {
+                getContext().getContentResolver().applyBatch(
+                        WeatherContract.CONTENT_AUTHORITY, operations);
+            } catch (RemoteException | OperationApplicationException e) {
+                Log.e(LOG_TAG, "Error storing forecasts", e);
+                return;
+            }
 
-            // Insert the new weather information into the database
-            Vector<ContentValues> cVVector = new Vector<ContentValues>(weatherArray.length());
+            Context context = getContext();
+            for (FetchResult result : stored) {
+                saveCacheValidators(context,
+                        context.getString(R.string.pref_forecast_etag_prefix)
+                                + result.locationSetting,
+                        context.getString(R.string.pref_forecast_last_modified_prefix)
+                                + result.locationSetting,
+                        result.eTag, result.lastModified);
+            }
+            for (FetchResult result : storedHourly) {
+                saveCacheValidators(context,
+                        context.getString(R.string.pref_hourly_etag_prefix)
+                                + result.locationSetting,
+                        context.getString(R.string.pref_hourly_last_modified_prefix)
+                                + result.locationSetting,
+                        result.hourlyETag, result.hourlyLastModified);
+            }
+        }
 
-            // OWM returns daily forecasts based upon the local time of the city that is being
-            // asked for, which means that we need to know the GMT offset to translate this data
-            // properly.
+        if ( weatherCount > 0 ) {
+            updateWidgets();
+            updateMuzei();
+            updateWear();
+            notifyWeather();
+        } else if (preferredStatus == LOCATION_STATUS_OK) {
+            // Nothing new was stored, but today may have moved on to the next stored day
+            updateWear();
+        }
+        Log.d(LOG_TAG, "Sync Complete. " + weatherCount + " Inserted for "
+                + stored.size() + " of " + results.size() + " locations, and "
+                + hourlyCount + " hours");
+        setLocationStatus(getContext(), preferredStatus);
+    }
 
-            // Since this data is also sent in-order and the first day is always the
-            // current day, we're going to take advantage of that to get a nice
-            // normalized UTC date for all of our weather.
+    /**
+     * Makes the request conditional on the forecast we stored last time for this location, so
+     * that an unchanged forecast costs a 304 instead of a full download.  Validators are only
+     * sent while we actually hold rows of that forecast for the location, otherwise a 304 would
+     * leave us with nothing to show.
+     */
+    private void addCacheValidators(HttpURLConnection urlConnection, String eTagKey,
+                                    String lastModifiedKey, boolean cached) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(getContext());
+        String eTag = prefs.getString(eTagKey, null);
+        long lastModified = prefs.getLong(lastModifiedKey, 0);
+
+        if ((eTag == null && lastModified == 0) || !cached) {
+            return;
+        }
+        if (eTag != null) {
+            urlConnection.setRequestProperty("If-None-Match", eTag);
+        }
+        if (lastModified != 0) {
+            urlConnection.setIfModifiedSince(lastModified);
+        }
+    }
 
-            Time dayTime = new Time();
-            dayTime.setToNow();
-
-            // we start at the day returned by local time. Otherwise this is a mess.
-            int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
-
-            // now we work exclusively in UTC
-            dayTime = new Time();
-
-            for(int i = 0; i < weatherArray.length(); i++) {
-                // These are the values that will be collected.
-                long dateTime;
-                double pressure;
-                int humidity;
-                double windSpeed;
-                double windDirection;
-
-                double high;
-                double low;
-
-                String description;
-                int weatherId;
-
-                // Get the JSON object representing the day
-                JSONObject dayForecast = weatherArray.getJSONObject(i);
-
-                // Cheating to convert this to UTC time, which is what we want anyhow
-                dateTime = dayTime.setJulianDay(julianStartDay+i);
-
-                pressure = dayForecast.getDouble(OWM_PRESSURE);
-                humidity = dayForecast.getInt(OWM_HUMIDITY);
-                windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
-                windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
-
-                // Description is in a child array called "weather", which is 1 element long.
-                // That element also contains a weather code.
-                JSONObject weatherObject =
-                        dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
-                description = weatherObject.getString(OWM_DESCRIPTION);
-                weatherId = weatherObject.getInt(OWM_WEATHER_ID);
-
-                // Temperatures are in a child object called "temp".  Try not to name variables
-                // "temp" when working with temperature.  It confuses everybody.
-                JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
-                high = temperatureObject.getDouble(OWM_MAX);
-                low = temperatureObject.getDouble(OWM_MIN);
-
-                ContentValues weatherValues = new ContentValues();
-
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTime);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, description);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
-
-                cVVector.add(weatherValues);
-            }
+    private boolean hasCachedForecast(String locationSetting) {
+        Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                locationSetting, System.currentTimeMillis());
+        Cursor cursor = getContext().getContentResolver().query(weatherUri,
+                new String[]{WeatherContract.WeatherEntry.TABLE_NAME + "." +
+                        WeatherContract.WeatherEntry._ID},
+                null, null, null);
+        if (cursor == null) {
+            return false;
+        }
+        boolean hasForecast = cursor.moveToFirst();
+        cursor.close();
+        return hasForecast;
+    }
 
-            int inserted = 0;
-            // add to database
-            if ( cVVector.size() > 0 ) {
-                ContentValues[] cvArray = new ContentValues[cVVector.size()];
-                cVVector.toArray(cvArray);
-                getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
-
-                // delete old data so we don't build up an endless history
-                getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
-                        WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
-                        new String[] {Long.toString(dayTime.setJulianDay(julianStartDay-1))});
-
-                updateWidgets();
-                updateMuzei();
-                notifyWeather();
-            }
-            Log.d(LOG_TAG, "Sync Complete. " + cVVector.size() + " Inserted");
-            setLocationStatus(getContext(), LOCATION_STATUS_OK);
+    private boolean hasCachedHours(String locationSetting) {
+        Uri hourlyUri = WeatherContract.HourlyEntry.buildHourlyLocationWithStartTime(
+                locationSetting, System.currentTimeMillis());
+        Cursor cursor = getContext().getContentResolver().query(hourlyUri,
+                new String[]{WeatherContract.HourlyEntry.TABLE_NAME + "." +
+                        WeatherContract.HourlyEntry._ID},
+                null, null, null);
+        if (cursor == null) {
+            return false;
+        }
+        boolean hasHours = cursor.moveToFirst();
+        cursor.close();
+        return hasHours;
+    }
 
-        } catch (JSONException e) {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
+    /**
+     * @return the id of the stored location, or -1 if we don't have it
+     */
+    private long getLocationId(String locationSetting) {
+        Cursor cursor = getContext().getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                new String[]{WeatherContract.LocationEntry._ID},
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{locationSetting},
+                null);
+        if (cursor == null) {
+            return -1;
         }
+        long locationId = cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        cursor.close();
+        return locationId;
     }
 
     private void updateWidgets() {
@@ -376,6 +581,11 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
         }
     }
 
+    private void updateWear() {
+        Context context = getContext();
+        context.startService(new Intent(context, WearWeatherService.class));
+    }
+
     private void notifyWeather() {
         Context context = getContext();
         //checking the last update and notify if it' the first of the day
@@ -484,53 +694,25 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
     }
 
     /**
-     * Helper method to handle insertion of a new location in the weather database.
+     * Helper method to build the values of a location for the weather database.
      *
      * @param locationSetting The location string used to request updates from the server.
      * @param cityName A human-readable city name, e.g "Mountain View"
      * @param lat the latitude of the city
      * @param lon the longitude of the city
-     * @return the row ID of the added location.
+     * @return the values to insert into the location table.
      */
-    long addLocation(String locationSetting, String cityName, double lat, double lon) {
-        long locationId;
-
-        // First, check if the location with this city name exists in the db
-        Cursor locationCursor = getContext().getContentResolver().query(
-                WeatherContract.LocationEntry.CONTENT_URI,
-                new String[]{WeatherContract.LocationEntry._ID},
-                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
-                new String[]{locationSetting},
-                null);
-
-        if (locationCursor.moveToFirst()) {
-            int locationIdIndex = locationCursor.getColumnIndex(WeatherContract.LocationEntry._ID);
-            locationId = locationCursor.getLong(locationIdIndex);
-        } else {
-            // Now that the content provider is set up, inserting rows of data is pretty simple.
-            // First create a ContentValues object to hold the data you want to insert.
-            ContentValues locationValues = new ContentValues();
-
-            // Then add the data, along with the corresponding name of the data type,
-            // so the content provider knows what kind of value is being inserted.
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, cityName);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, lat);
-            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, lon);
-
-            // Finally, insert location data into the database.
-            Uri insertedUri = getContext().getContentResolver().insert(
-                    WeatherContract.LocationEntry.CONTENT_URI,
-                    locationValues
-            );
-
-            // The resulting URI contains the ID for the row.  Extract the locationId from the Uri.
-            locationId = ContentUris.parseId(insertedUri);
-        }
-
-        locationCursor.close();
-        // Wait, that worked?  Yes!
-        return locationId;
+    static ContentValues getLocationValues(String locationSetting, String cityName,
+                                           double lat, double lon) {
+        // Create a ContentValues object to hold the data you want to insert, along with the
+        // corresponding name of the data type, so the content provider knows what kind of value
+        // is being inserted.
+        ContentValues locationValues = new ContentValues();
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, cityName);
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, lat);
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, lon);
+        return locationValues;
     }
 
     /**
@@ -622,6 +804,33 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter {
 
     public static void initializeSyncAdapter(Context context) {
         getSyncAccount(context);
+        WeatherMaintenanceService.schedule(context);
+    }
+
+    /**
+     * Remembers the HTTP validators of a forecast just stored for a location.  Like
+     * setLocationStatus, this should not be called from the UI thread.
+     * @param c Context to get the PreferenceManager from.
+     * @param eTagKey The preference key to keep the ETag under
+     * @param lastModifiedKey The preference key to keep the Last-Modified date under
+     * @param eTag The ETag response header, or null if there was none
+     * @param lastModified The Last-Modified response header, or 0 if there was none
+     */
+    static private void saveCacheValidators(Context c, String eTagKey, String lastModifiedKey,
+                                            String eTag, long lastModified) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(c);
+        SharedPreferences.Editor spe = sp.edit();
+        if (eTag != null) {
+            spe.putString(eTagKey, eTag);
+        } else {
+            spe.remove(eTagKey);
+        }
+        if (lastModified != 0) {
+            spe.putLong(lastModifiedKey, lastModified);
+        } else {
+            spe.remove(lastModifiedKey);
+        }
+        spe.commit();
     }
 
     /**
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.wear;
+
+import android.app.IntentService;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.DataApi;
+import com.google.android.gms.wearable.PutDataMapRequest;
+import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * IntentService which sends today's weather for the preferred location to the watch face.
+ * Started by the sync adapter, so the watch stays up to date without the app being open.
+ * Nothing is sent when the weather is the same as the last weather we sent.
+ */
+public class WearWeatherService extends IntentService {
+    private static final String LOG_TAG = WearWeatherService.class.getSimpleName();
+
+    private static final long CONNECTION_TIMEOUT_SECONDS = 30;
+
+    private static final String[] FORECAST_COLUMNS = {
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
+    };
+    // these indices must match the projection
+    private static final int INDEX_WEATHER_ID = 0;
+    private static final int INDEX_MAX_TEMP = 1;
+    private static final int INDEX_MIN_TEMP = 2;
+
+    public WearWeatherService() {
+        super("WearWeatherService");
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        // Get today's data from the ContentProvider
+        String location = Utility.getPreferredLocation(this);
+        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                location, System.currentTimeMillis());
+        Cursor data = getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
+                null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (data == null) {
+            return;
+        }
+        if (!data.moveToFirst()) {
+            data.close();
+            return;
+        }
+        int weatherId = data.getInt(INDEX_WEATHER_ID);
+        int maxTemp = data.getInt(INDEX_MAX_TEMP);
+        int minTemp = data.getInt(INDEX_MIN_TEMP);
+        data.close();
+
+        byte[] payload = WeatherPayload.toBytes(weatherId, maxTemp, minTemp,
+                Utility.getStringForWeatherCondition(this, weatherId));
+
+        // Don't even connect if the watch already has this weather
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        long payloadHash = crc.getValue();
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        String payloadHashKey = getString(R.string.pref_wear_payload_hash_key);
+        if (prefs.getLong(payloadHashKey, -1) == payloadHash) {
+            return;
+        }
+
+        GoogleApiClient googleApiClient = new GoogleApiClient.Builder(this)
+                .addApi(Wearable.API)
+                .build();
+        ConnectionResult connectionResult =
+                googleApiClient.blockingConnect(CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!connectionResult.isSuccess()) {
+            Log.w(LOG_TAG, "Couldn't connect to the Wearable API: " + connectionResult);
+            return;
+        }
+        try {
+            PutDataMapRequest dataMapRequest = PutDataMapRequest.create(WeatherPayload.PATH);
+            dataMapRequest.getDataMap().putByteArray(WeatherPayload.KEY, payload);
+            PutDataRequest putDataRequest = dataMapRequest.asPutDataRequest();
+            DataApi.DataItemResult result = Wearable.DataApi
+                    .putDataItem(googleApiClient, putDataRequest)
+                    .await(CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (result.getStatus().isSuccess()) {
+                prefs.edit().putLong(payloadHashKey, payloadHash).apply();
+            } else {
+                Log.e(LOG_TAG, "Sending weather to the watch failed: " + result.getStatus());
+            }
+        } finally {
+            googleApiClient.disconnect();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.wear;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Today's weather, as sent to the watch face: a few bytes in a single DataItem, rather than a
+ * DataMap of loose values and a PNG of the icon.  The watch draws the icon for the weather id
+ * from its own copy of the art.
+ * <p>
+ * The watch reads this with its own WeatherPayload class, so the two must agree on the format.
+ * Version 1 is, in DataOutputStream terms:
+ * <pre>
+ *     byte    version (1)
+ *     short   OpenWeatherMap weather condition id
+ *     short   high temperature, whole degrees
+ *     short   low temperature, whole degrees
+ *     UTF     short description, in the phone's language
+ * </pre>
+ * Any change to the format needs a new version number.
+ */
+class WeatherPayload {
+
+    // The DataItem path and the DataMap key the payload is sent under
+    static final String PATH = "/weather-id";
+    static final String KEY = "payload";
+
+    static final byte VERSION = 1;
+
+    private WeatherPayload() {
+    }
+
+    static byte[] toBytes(int weatherId, int highTemp, int lowTemp, String description) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION);
+            out.writeShort(weatherId);
+            out.writeShort(highTemp);
+            out.writeShort(lowTemp);
+            out.writeUTF(description != null ? description : "");
+        } catch (IOException e) {
+            // A ByteArrayOutputStream doesn't throw
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+
+/**
+ * The versions of a weather icon shown in ambient mode: a grayscale one, and a one bit one for
+ * screens with low-bit ambient mode.  Making them touches every pixel of the icon, so do it off
+ * the UI thread.
+ */
+final class AmbientIcons {
+
+    // 4x4 ordered dither matrix.  Scaled up to 0-255, these are the thresholds a pixel's
+    // brightness has to beat to be lit.
+    private static final int[] BAYER_MATRIX = {
+            0, 8, 2, 10,
+            12, 4, 14, 6,
+            3, 11, 1, 9,
+            15, 7, 13, 5
+    };
+
+    final Bitmap grayscale;
+    // ALPHA_8: lit pixels are opaque, the rest transparent
+    final Bitmap lowBit;
+
+    private AmbientIcons(Bitmap grayscale, Bitmap lowBit) {
+        this.grayscale = grayscale;
+        this.lowBit = lowBit;
+    }
+
+    static AmbientIcons create(Bitmap icon) {
+        return new AmbientIcons(toGrayscale(icon), toLowBit(icon));
+    }
+
+    private static Bitmap toGrayscale(Bitmap icon) {
+        Bitmap grayscale = Bitmap.createBitmap(icon.getWidth(), icon.getHeight(),
+                Bitmap.Config.ARGB_8888);
+        ColorMatrix matrix = new ColorMatrix();
+        matrix.setSaturation(0);
+        Paint paint = new Paint();
+        paint.setColorFilter(new ColorMatrixColorFilter(matrix));
+        new Canvas(grayscale).drawBitmap(icon, 0, 0, paint);
+        return grayscale;
+    }
+
+    private static Bitmap toLowBit(Bitmap icon) {
+        int width = icon.getWidth();
+        int height = icon.getHeight();
+        int[] pixels = new int[width * height];
+        icon.getPixels(pixels, 0, width, 0, 0, width, height);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                int color = pixels[i];
+                int alpha = color >>> 24;
+                int red = (color >> 16) & 0xff;
+                int green = (color >> 8) & 0xff;
+                int blue = color & 0xff;
+                // luminance, against the black background
+                int brightness = ((red * 77 + green * 150 + blue * 29) >> 8) * alpha / 255;
+                int threshold = BAYER_MATRIX[(y & 3) * 4 + (x & 3)] * 16 + 8;
+                pixels[i] = brightness > threshold ? 0xff000000 : 0;
+            }
+        }
+
+        Bitmap lowBit = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        lowBit.setPixels(pixels, 0, width, 0, 0, width, height);
+        return lowBit;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Times the frames the watch face draws and logs a summary every {@link #FRAMES_PER_REPORT}
+ * frames.  Off unless the tag is loggable at DEBUG, so that it costs nothing in normal use:
+ * <pre>adb shell setprop log.tag.FrameTimeStats DEBUG</pre>
+ */
+class FrameTimeStats {
+    private static final String LOG_TAG = FrameTimeStats.class.getSimpleName();
+
+    // a minute of frames in interactive mode
+    private static final int FRAMES_PER_REPORT = 60;
+
+    private final boolean mEnabled = Log.isLoggable(LOG_TAG, Log.DEBUG);
+
+    private long mFrameStartNanos;
+    private int mFrames;
+    private long mTotalNanos;
+    private long mMaxNanos;
+    private int mLayerRedrawsAtStart;
+
+    /**
+     * Call just before drawing a frame.
+     */
+    void startFrame() {
+        if (mEnabled) {
+            mFrameStartNanos = SystemClock.elapsedRealtimeNanos();
+        }
+    }
+
+    /**
+     * Call just after drawing a frame.
+     *
+     * @param layerRedraws how many times the renderer has redrawn its background layer so far
+     */
+    void endFrame(int layerRedraws) {
+        if (!mEnabled) {
+            return;
+        }
+        long frameNanos = SystemClock.elapsedRealtimeNanos() - mFrameStartNanos;
+        if (mFrames == 0) {
+            mLayerRedrawsAtStart = layerRedraws;
+        }
+        mFrames++;
+        mTotalNanos += frameNanos;
+        mMaxNanos = Math.max(mMaxNanos, frameNanos);
+
+        if (mFrames == FRAMES_PER_REPORT) {
+            Log.d(LOG_TAG, "Last " + mFrames + " frames: average " + mTotalNanos / mFrames / 1000
+                    + "us, max " + mMaxNanos / 1000 + "us, background layer redrawn "
+                    + (layerRedraws - mLayerRedrawsAtStart) + " times");
+            mFrames = 0;
+            mTotalNanos = 0;
+            mMaxNanos = 0;
+        }
+    }
+}
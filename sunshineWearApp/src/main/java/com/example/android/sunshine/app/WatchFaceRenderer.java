@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.text.format.Time;
+
+import org.joda.time.LocalDate;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import app.android.example.com.sunshinewatchface.R;
+
+/**
+ * Draws the watch face straight onto the canvas.  Where everything goes is worked out once, in
+ * {@link #onApplyWindowInsets}, and the strings on the face are only rebuilt when what they show
+ * changes, so drawing a frame comes down to a few drawText calls with Paints made up front.
+ * <p>
+ * The face is drawn in two layers.  The background, date and weather only change a few times a
+ * day, so they are drawn into an offscreen bitmap when they do, and each frame copies that bitmap
+ * to the screen and draws the time over it.  Ambient mode has a background layer of its own, so
+ * going in and out of ambient mode doesn't redraw either of them.
+ * <p>
+ * In ambient mode the seconds aren't drawn, the weather icon is replaced by one made for ambient
+ * mode, and on screens with low-bit ambient mode nothing is anti-aliased or filtered.
+ */
+class WatchFaceRenderer {
+
+    // "00" to "59", so that drawing the time never formats a number
+    private static final String[] TWO_DIGITS = new String[60];
+    static {
+        for (int i = 0; i < TWO_DIGITS.length; i++) {
+            TWO_DIGITS[i] = (i < 10 ? "0" : "") + i;
+        }
+    }
+
+    private static final String TIME_SEPARATOR = ":";
+    private static final String DEGREE = "\u00B0";
+
+    private static final Typeface LIGHT_TYPEFACE =
+            Typeface.create("sans-serif-light", Typeface.NORMAL);
+    private static final Typeface THIN_TYPEFACE =
+            Typeface.create("sans-serif-thin", Typeface.NORMAL);
+
+    private final Resources mResources;
+    private final DateTimeFormatter mDateFormat = DateTimeFormat.forPattern("EEE, MMM d");
+
+    private final Paint mTimePaint = newTextPaint(LIGHT_TYPEFACE);
+    private final Paint mSecondPaint = newTextPaint(THIN_TYPEFACE);
+    private final Paint mDatePaint = newTextPaint(THIN_TYPEFACE);
+    private final Paint mWeatherPaint = newTextPaint(LIGHT_TYPEFACE);
+    private final Paint mLowTempPaint = newTextPaint(THIN_TYPEFACE);
+    // White, so that ALPHA_8 icons come out white
+    private final Paint mIconPaint = newPaint(Paint.FILTER_BITMAP_FLAG);
+    private final Paint[] mTextPaints =
+            { mTimePaint, mSecondPaint, mDatePaint, mWeatherPaint, mLowTempPaint };
+
+    // Layout, in pixels.  x is the left edge of the text, y its baseline.
+    private float mDateCenterX;
+    private float mDateY;
+    private float mHourX;
+    private float mFirstSeparatorX;
+    private float mMinuteX;
+    private float mSecondSeparatorX;
+    private float mSecondX;
+    private float mTimeY;
+    private final RectF mIconBounds = new RectF();
+    private float mWeatherTextX;
+    private float mDescriptionY;
+    private float mTempY;
+    private float mLowTempMarginStart;
+
+    // What is on the face.  The date is rebuilt when the day changes, the rest when the weather does.
+    private String mDateText;
+    private int mDateYear = -1;
+    private int mDateYearDay = -1;
+    private String mDescription;
+    private String mHighTemp;
+    private String mLowTemp;
+    private float mLowTempX;
+    private Bitmap mIcon;
+    private Bitmap mAmbientIcon;
+
+    private boolean mLowBitAmbient;
+    // whether the paints are currently set up for ambient mode
+    private boolean mPaintsAmbient;
+
+    // Everything but the time, as last drawn in and out of ambient mode
+    private final Layer mInteractiveLayer = new Layer();
+    private final Layer mAmbientLayer = new Layer();
+    private int mBackgroundLayerRedraws;
+
+    /**
+     * An offscreen bitmap the size of the screen, and whether what is drawn on it is out of date.
+     */
+    private static final class Layer {
+        Bitmap bitmap;
+        Canvas canvas;
+        boolean dirty = true;
+
+        void setSize(int width, int height) {
+            if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+                release();
+                bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                canvas = new Canvas(bitmap);
+            }
+            dirty = true;
+        }
+
+        void release() {
+            if (bitmap != null) {
+                bitmap.recycle();
+                bitmap = null;
+                canvas = null;
+            }
+        }
+    }
+
+    WatchFaceRenderer(Resources resources) {
+        mResources = resources;
+        mSecondPaint.setColor(resources.getColor(R.color.second_text, null));
+        mDatePaint.setTextSize(resources.getDimension(R.dimen.date_text_size));
+        mDatePaint.setTextAlign(Paint.Align.CENTER);
+        mWeatherPaint.setTextSize(resources.getDimension(R.dimen.weather_text_size));
+        mLowTempPaint.setTextSize(resources.getDimension(R.dimen.weather_text_size));
+        mLowTempMarginStart = resources.getDimension(R.dimen.low_temp_margin_start);
+    }
+
+    private static Paint newTextPaint(Typeface typeface) {
+        Paint paint = newPaint(Paint.ANTI_ALIAS_FLAG);
+        paint.setTypeface(typeface);
+        return paint;
+    }
+
+    private static Paint newPaint(int flags) {
+        Paint paint = new Paint(flags);
+        paint.setColor(Color.WHITE);
+        return paint;
+    }
+
+    /**
+     * Lays out the face for a screen of the given shape and size.
+     */
+    void onApplyWindowInsets(boolean isRound, int width, int height) {
+        Resources res = mResources;
+        float padding = res.getDimension(R.dimen.face_padding);
+
+        float timeTextSize = res.getDimension(isRound
+                ? R.dimen.time_text_size_round : R.dimen.time_text_size_square);
+        mTimePaint.setTextSize(timeTextSize);
+        mSecondPaint.setTextSize(timeTextSize);
+
+        Paint.FontMetrics dateMetrics = mDatePaint.getFontMetrics();
+        float dateTop = padding + res.getDimension(isRound
+                ? R.dimen.date_margin_top_round : R.dimen.date_margin_top_square);
+        mDateCenterX = width / 2f;
+        mDateY = dateTop - dateMetrics.top;
+
+        // The time sits at the same place whatever the digits are, so leave room for the widest
+        // pair rather than measuring the actual time every frame.
+        Paint.FontMetrics timeMetrics = mTimePaint.getFontMetrics();
+        float timeTop = isRound
+                ? padding + res.getDimension(R.dimen.time_margin_top_round)
+                : dateTop + dateMetrics.bottom - dateMetrics.top
+                        + res.getDimension(R.dimen.time_margin_top_square);
+        float separatorMargin = res.getDimension(R.dimen.time_separator_margin);
+        float separatorWidth = mTimePaint.measureText(TIME_SEPARATOR);
+        float digitsWidth = widestTwoDigits(mTimePaint);
+        mHourX = padding + res.getDimension(isRound
+                ? R.dimen.time_margin_start_round : R.dimen.time_margin_start_square);
+        mFirstSeparatorX = mHourX + digitsWidth + separatorMargin;
+        mMinuteX = mFirstSeparatorX + separatorWidth + separatorMargin;
+        mSecondSeparatorX = mMinuteX + digitsWidth + separatorMargin;
+        mSecondX = mSecondSeparatorX + separatorWidth + separatorMargin;
+        mTimeY = timeTop - timeMetrics.top;
+
+        float iconSize = res.getDimension(R.dimen.weather_icon_size);
+        float iconTop = isRound
+                ? mTimeY + timeMetrics.bottom + res.getDimension(R.dimen.weather_icon_margin_round)
+                : height - padding - res.getDimension(R.dimen.weather_icon_margin_square)
+                        - iconSize;
+        mIconBounds.set(mHourX, iconTop, mHourX + iconSize, iconTop + iconSize);
+
+        Paint.FontMetrics weatherMetrics = mWeatherPaint.getFontMetrics();
+        mWeatherTextX = mIconBounds.right + res.getDimension(R.dimen.weather_text_margin_start);
+        mDescriptionY = iconTop - weatherMetrics.top;
+        mTempY = mDescriptionY + weatherMetrics.bottom - weatherMetrics.top;
+        updateLowTempX();
+
+        mInteractiveLayer.setSize(width, height);
+        mAmbientLayer.setSize(width, height);
+    }
+
+    /**
+     * Whether the screen has fewer bits for each color in ambient mode, so that nothing should be
+     * anti-aliased or filtered in ambient mode.
+     */
+    void setLowBitAmbient(boolean lowBitAmbient) {
+        if (mLowBitAmbient != lowBitAmbient) {
+            mLowBitAmbient = lowBitAmbient;
+            mAmbientLayer.dirty = true;
+            if (mPaintsAmbient) {
+                setUpPaints(true);
+            }
+        }
+    }
+
+    private void setUpPaints(boolean ambient) {
+        boolean smooth = !(ambient && mLowBitAmbient);
+        for (Paint paint : mTextPaints) {
+            paint.setAntiAlias(smooth);
+        }
+        mIconPaint.setFilterBitmap(smooth);
+        mPaintsAmbient = ambient;
+    }
+
+    private static float widestTwoDigits(Paint paint) {
+        float widest = 0;
+        for (String digits : TWO_DIGITS) {
+            widest = Math.max(widest, paint.measureText(digits));
+        }
+        return widest;
+    }
+
+    /**
+     * Sets the weather to show.  The icon is drawn into a square of weather_icon_size, so it is
+     * best passed in at that size.
+     */
+    void setWeather(int highTemp, int lowTemp, String description, Bitmap icon) {
+        mHighTemp = highTemp + DEGREE;
+        mLowTemp = lowTemp + DEGREE;
+        mDescription = description;
+        mIcon = icon;
+        mAmbientIcon = null;
+        updateLowTempX();
+        mInteractiveLayer.dirty = true;
+        mAmbientLayer.dirty = true;
+    }
+
+    /**
+     * Sets the icon to show in ambient mode instead of the one passed to {@link #setWeather}.
+     * Cleared by every call to setWeather; until it is set again, no icon is shown in ambient.
+     * ALPHA_8 icons are drawn in white.
+     */
+    void setAmbientIcon(Bitmap icon) {
+        mAmbientIcon = icon;
+        mAmbientLayer.dirty = true;
+    }
+
+    private void updateLowTempX() {
+        if (mHighTemp != null) {
+            mLowTempX = mWeatherTextX + mWeatherPaint.measureText(mHighTemp) + mLowTempMarginStart;
+        }
+    }
+
+    /**
+     * Draws the whole face for the given time.
+     */
+    void draw(Canvas canvas, Time time, boolean ambient) {
+        if (time.year != mDateYear || time.yearDay != mDateYearDay) {
+            mDateYear = time.year;
+            mDateYearDay = time.yearDay;
+            mDateText = mDateFormat.print(new LocalDate());
+            mInteractiveLayer.dirty = true;
+            mAmbientLayer.dirty = true;
+        }
+        if (ambient != mPaintsAmbient) {
+            setUpPaints(ambient);
+        }
+
+        Layer layer = ambient ? mAmbientLayer : mInteractiveLayer;
+        if (layer.bitmap == null) {
+            // Not laid out yet
+            canvas.drawColor(Color.BLACK);
+            return;
+        }
+        if (layer.dirty) {
+            drawBackground(layer.canvas, ambient);
+            layer.dirty = false;
+            mBackgroundLayerRedraws++;
+        }
+        canvas.drawBitmap(layer.bitmap, 0, 0, null);
+
+        canvas.drawText(TWO_DIGITS[time.hour], mHourX, mTimeY, mTimePaint);
+        canvas.drawText(TIME_SEPARATOR, mFirstSeparatorX, mTimeY, mTimePaint);
+        canvas.drawText(TWO_DIGITS[time.minute], mMinuteX, mTimeY, mTimePaint);
+        if (!ambient) {
+            canvas.drawText(TIME_SEPARATOR, mSecondSeparatorX, mTimeY, mTimePaint);
+            // Time.second can be 60 on a leap second
+            canvas.drawText(TWO_DIGITS[Math.min(time.second, 59)], mSecondX, mTimeY, mSecondPaint);
+        }
+    }
+
+    /**
+     * Draws everything on the face except the time.
+     */
+    private void drawBackground(Canvas canvas, boolean ambient) {
+        canvas.drawColor(Color.BLACK);
+        canvas.drawText(mDateText, mDateCenterX, mDateY, mDatePaint);
+
+        Bitmap icon = ambient ? mAmbientIcon : mIcon;
+        if (icon != null) {
+            canvas.drawBitmap(icon, null, mIconBounds, mIconPaint);
+        }
+        if (mDescription != null) {
+            canvas.drawText(mDescription, mWeatherTextX, mDescriptionY, mWeatherPaint);
+        }
+        if (mHighTemp != null) {
+            canvas.drawText(mHighTemp, mWeatherTextX, mTempY, mWeatherPaint);
+            canvas.drawText(mLowTemp, mLowTempX, mTempY, mLowTempPaint);
+        }
+    }
+
+    /**
+     * @return how many times the background layer has been drawn, for frame statistics
+     */
+    int getBackgroundLayerRedraws() {
+        return mBackgroundLayerRedraws;
+    }
+
+    /**
+     * Frees the background layers.  The renderer can't be used after this.
+     */
+    void release() {
+        mInteractiveLayer.release();
+        mAmbientLayer.release();
+    }
+}
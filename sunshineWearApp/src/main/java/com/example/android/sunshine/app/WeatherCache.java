@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The last weather payload received from the phone, kept in a file so that the watch face has
+ * something to show as soon as it starts after a reboot or after its process was killed.  The
+ * icons are bundled, so the payload is all there is to keep.
+ * <p>
+ * Does file I/O, so keep it off the main thread.
+ */
+final class WeatherCache {
+    private static final String LOG_TAG = WeatherCache.class.getSimpleName();
+
+    private static final String FILE_NAME = "weather_payload";
+
+    private WeatherCache() {
+    }
+
+    /**
+     * @return the last payload written, or null if there is none
+     */
+    static byte[] read(Context context) {
+        try {
+            return getFile(context).readFully();
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error reading the weather cache", e);
+            return null;
+        }
+    }
+
+    static void write(Context context, byte[] payload) {
+        AtomicFile file = getFile(context);
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            out.write(payload);
+            file.finishWrite(out);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error writing the weather cache", e);
+            if (out != null) {
+                file.failWrite(out);
+            }
+        }
+    }
+
+    private static AtomicFile getFile(Context context) {
+        return new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+}
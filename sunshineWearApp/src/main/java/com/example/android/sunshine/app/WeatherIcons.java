@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.SparseArray;
+
+import app.android.example.com.sunshinewatchface.R;
+
+/**
+ * The weather icons bundled with the watch face, looked up by OpenWeatherMap weather condition
+ * id.  Each one, and its ambient versions, is made the first time it is needed, and kept, so
+ * there are never more than eight of them in memory.  Making them is slow, so the first call
+ * for an icon should come from a background thread.
+ */
+class WeatherIcons {
+
+    private static WeatherIcons sInstance;
+
+    private final Resources mResources;
+    private final int mIconSize;
+    // by drawable resource id
+    private final SparseArray<Bitmap> mIcons = new SparseArray<>();
+    private final SparseArray<AmbientIcons> mAmbientIcons = new SparseArray<>();
+
+    static synchronized WeatherIcons getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WeatherIcons(context.getApplicationContext().getResources());
+        }
+        return sInstance;
+    }
+
+    private WeatherIcons(Resources resources) {
+        mResources = resources;
+        mIconSize = resources.getDimensionPixelSize(R.dimen.weather_icon_size);
+    }
+
+    /**
+     * @return the icon for the given weather condition, or null if we don't have one
+     */
+    synchronized Bitmap getIcon(int weatherId) {
+        int resourceId = getArtResourceForWeatherCondition(weatherId);
+        if (resourceId == -1) {
+            return null;
+        }
+        Bitmap icon = mIcons.get(resourceId);
+        if (icon == null) {
+            icon = decodeIcon(resourceId);
+            mIcons.put(resourceId, icon);
+        }
+        return icon;
+    }
+
+    /**
+     * @return the ambient versions of the icon for the given weather condition, or null if we
+     * don't have one
+     */
+    synchronized AmbientIcons getAmbientIcons(int weatherId) {
+        int resourceId = getArtResourceForWeatherCondition(weatherId);
+        if (resourceId == -1) {
+            return null;
+        }
+        AmbientIcons ambientIcons = mAmbientIcons.get(resourceId);
+        if (ambientIcons == null) {
+            ambientIcons = AmbientIcons.create(getIcon(weatherId));
+            mAmbientIcons.put(resourceId, ambientIcons);
+        }
+        return ambientIcons;
+    }
+
+    /**
+     * Decodes the art straight to the size we draw it at: subsampled by the largest power of two
+     * that keeps it at least that big, then scaled the rest of the way by the decoder.
+     */
+    private Bitmap decodeIcon(int resourceId) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        BitmapFactory.decodeResource(mResources, resourceId, options);
+        int width = options.outWidth;
+
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= mIconSize) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        // The decoder scales by inTargetDensity / inDensity
+        options.inScaled = true;
+        options.inDensity = width / sampleSize;
+        options.inTargetDensity = mIconSize;
+        return BitmapFactory.decodeResource(mResources, resourceId, options);
+    }
+
+    /**
+     * The same mapping as the phone app's Utility.getArtResourceForWeatherCondition.
+     */
+    private static int getArtResourceForWeatherCondition(int weatherId) {
+        // Based on weather code data found at:
+        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.drawable.art_storm;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.drawable.art_light_rain;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return R.drawable.art_rain;
+        } else if (weatherId == 511) {
+            return R.drawable.art_snow;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return R.drawable.art_rain;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return R.drawable.art_snow;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return R.drawable.art_fog;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return R.drawable.art_storm;
+        } else if (weatherId == 800) {
+            return R.drawable.art_clear;
+        } else if (weatherId == 801) {
+            return R.drawable.art_light_clouds;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return R.drawable.art_clouds;
+        }
+        return -1;
+    }
+}
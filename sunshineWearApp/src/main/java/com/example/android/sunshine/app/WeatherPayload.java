@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Today's weather, as sent by the phone.  The format is described, and written, by the phone
+ * app's WeatherPayload; the two must agree.
+ */
+final class WeatherPayload {
+    private static final String LOG_TAG = WeatherPayload.class.getSimpleName();
+
+    // The DataItem path and the DataMap key the payload is sent under
+    static final String PATH = "/weather-id";
+    static final String KEY = "payload";
+
+    private static final byte VERSION = 1;
+
+    final int weatherId;
+    final int highTemp;
+    final int lowTemp;
+    final String description;
+    // the payload this was read from
+    final byte[] bytes;
+
+    private WeatherPayload(int weatherId, int highTemp, int lowTemp, String description,
+            byte[] bytes) {
+        this.weatherId = weatherId;
+        this.highTemp = highTemp;
+        this.lowTemp = lowTemp;
+        this.description = description;
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return the weather in the payload, or null if it is missing or not in a version we read
+     */
+    static WeatherPayload fromBytes(byte[] payload) {
+        if (payload == null || payload.length == 0) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        try {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                Log.w(LOG_TAG, "Ignoring weather payload version " + version);
+                return null;
+            }
+            return new WeatherPayload(in.readShort(), in.readShort(), in.readShort(),
+                    in.readUTF(), payload);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Truncated weather payload", e);
+            return null;
+        }
+    }
+}
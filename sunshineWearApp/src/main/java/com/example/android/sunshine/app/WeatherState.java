@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2016 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataItemBuffer;
+import com.google.android.gms.wearable.DataMapItem;
+import com.google.android.gms.wearable.PutDataRequest;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The weather the watch face shows.  The listener service that receives weather from the phone
+ * and the watch face that draws it run in the same process, so the weather is handed over here,
+ * icons and all, rather than through Intent extras.
+ * <p>
+ * The latest weather is also kept in a {@link WeatherCache}, which {@link #restore} reads back
+ * when the process starts again.
+ * <p>
+ * Updates are made one at a time on a background thread of our own.  Everything else here is
+ * for the main thread only.
+ */
+final class WeatherState {
+
+    /**
+     * A piece of weather, with its icons ready to draw.
+     */
+    static final class Weather {
+        final int weatherId;
+        final int highTemp;
+        final int lowTemp;
+        final String description;
+        // null if we have no icon for weatherId
+        final Bitmap icon;
+        final AmbientIcons ambientIcons;
+
+        Weather(WeatherPayload payload, Bitmap icon, AmbientIcons ambientIcons) {
+            this.weatherId = payload.weatherId;
+            this.highTemp = payload.highTemp;
+            this.lowTemp = payload.lowTemp;
+            this.description = payload.description;
+            this.icon = icon;
+            this.ambientIcons = ambientIcons;
+        }
+    }
+
+    interface Listener {
+        void onWeatherChanged(Weather weather);
+    }
+
+    private static final String LOG_TAG = WeatherState.class.getSimpleName();
+
+    private static final long CONNECTION_TIMEOUT_SECONDS = 30;
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+    private static final ArrayList<Listener> sListeners = new ArrayList<>();
+    private static Weather sWeather;
+    private static boolean sRestoreStarted;
+    // the payload of the latest update, from whichever thread it came
+    private static volatile byte[] sLatestPayload;
+
+    private WeatherState() {
+    }
+
+    /**
+     * @return the latest weather, or null if there's none yet
+     */
+    static Weather get() {
+        return sWeather;
+    }
+
+    static void addListener(Listener listener) {
+        sListeners.add(listener);
+    }
+
+    static void removeListener(Listener listener) {
+        sListeners.remove(listener);
+    }
+
+    /**
+     * Makes the given weather the latest, keeps it in the cache, and tells the listeners on the
+     * main thread.  Nothing happens if it is the same as the latest.  The work is done in the
+     * background, after any earlier updates; this returns straight away.  May be called from any
+     * thread.
+     */
+    static void updateInBackground(Context context, final WeatherPayload payload) {
+        final Context appContext = context.getApplicationContext();
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                update(appContext, payload);
+            }
+        });
+    }
+
+    // Does file I/O and may decode icons: only on sExecutor
+    private static void update(Context context, WeatherPayload payload) {
+        if (Arrays.equals(payload.bytes, sLatestPayload)) {
+            return;
+        }
+        sLatestPayload = payload.bytes;
+        WeatherCache.write(context, payload.bytes);
+        publish(context, payload, false);
+    }
+
+    private static void publish(Context context, WeatherPayload payload,
+            final boolean onlyIfNone) {
+        WeatherIcons icons = WeatherIcons.getInstance(context);
+        final Weather weather = new Weather(payload, icons.getIcon(payload.weatherId),
+                icons.getAmbientIcons(payload.weatherId));
+        sMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (onlyIfNone && sWeather != null) {
+                    return;
+                }
+                sWeather = weather;
+                for (Listener listener : new ArrayList<>(sListeners)) {
+                    listener.onWeatherChanged(weather);
+                }
+            }
+        });
+    }
+
+    /**
+     * Brings back the weather we had before the process last died, then catches up with the
+     * Data Layer in case the phone sent newer weather while we weren't listening.  Both happen
+     * in the background; listeners hear about the weather as it comes.  Only the first call
+     * does anything.
+     */
+    static void restore(Context context) {
+        if (sRestoreStarted) {
+            return;
+        }
+        sRestoreStarted = true;
+        final Context appContext = context.getApplicationContext();
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                WeatherPayload cached = WeatherPayload.fromBytes(WeatherCache.read(appContext));
+                if (cached != null && sLatestPayload == null) {
+                    // Anything that came from the phone meanwhile is newer
+                    sLatestPayload = cached.bytes;
+                    publish(appContext, cached, true);
+                }
+                WeatherPayload current = readDataItem(appContext);
+                if (current != null) {
+                    update(appContext, current);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the weather in the Data Layer, or null if there is none or we couldn't get it
+     */
+    private static WeatherPayload readDataItem(Context context) {
+        GoogleApiClient googleApiClient = new GoogleApiClient.Builder(context)
+                .addApi(Wearable.API)
+                .build();
+        ConnectionResult connectionResult =
+                googleApiClient.blockingConnect(CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!connectionResult.isSuccess()) {
+            Log.w(LOG_TAG, "Couldn't connect to the Wearable API: " + connectionResult);
+            return null;
+        }
+        try {
+            Uri uri = new Uri.Builder()
+                    .scheme(PutDataRequest.WEAR_URI_SCHEME)
+                    .path(WeatherPayload.PATH)
+                    .build();
+            DataItemBuffer dataItems = Wearable.DataApi.getDataItems(googleApiClient, uri)
+                    .await(CONNECTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            try {
+                if (!dataItems.getStatus().isSuccess()) {
+                    Log.w(LOG_TAG, "Couldn't read the weather DataItem: " + dataItems.getStatus());
+                    return null;
+                }
+                for (DataItem dataItem : dataItems) {
+                    WeatherPayload payload = WeatherPayload.fromBytes(DataMapItem
+                            .fromDataItem(dataItem).getDataMap().getByteArray(WeatherPayload.KEY));
+                    if (payload != null) {
+                        return payload;
+                    }
+                }
+                return null;
+            } finally {
+                dataItems.release();
+            }
+        } finally {
+            googleApiClient.disconnect();
+        }
+    }
+}